@@ -0,0 +1,42 @@
+#!/bin/sh
+# Runs one of the load scenarios against a local Play instance and aggregates
+# its results.
+#
+# Usage: ./run.sh browse|search|votes|notifications [-Jname=value ...]
+#
+# Properties: threads, rampup (s), duration (s), host, port, users, pages,
+# think/poll (ms), question (votes only), password
+
+set -e
+cd "$(dirname "$0")"
+
+scenario=$1
+if [ ! -f "$scenario.jmx" ]; then
+	echo "Usage: $0 browse|search|votes|notifications [-Jname=value ...]" >&2
+	exit 1
+fi
+shift
+
+results=results/$scenario-$(date +%Y%m%d-%H%M%S)
+mkdir -p "$results"
+${JMETER:-jmeter} -n -t "$scenario.jmx" -Jresults="$results" -j "$results/jmeter.log" "$@"
+
+# HTML dashboard (throughput, 90/95/99th percentiles per request)
+${JMETER:-jmeter} -g "$results/$scenario.jtl" -o "$results/report" > /dev/null
+
+# short summary for comparing runs
+awk -F, '
+	NR == 1 { for (i = 1; i <= NF; i++) column[$i] = i; next }
+	{
+		time = $column["timeStamp"]; elapsed = $column["elapsed"]
+		if (first == "" || time < first) first = time
+		if (time + elapsed > last) last = time + elapsed
+		count++; if ($column["success"] != "true") errors++
+		print elapsed > "'"$results"'/elapsed.txt"
+	}
+	END {
+		printf "requests: %d, errors: %d, throughput: %.1f/s\n", count, errors, count * 1000 / (last - first)
+	}' "$results/$scenario.jtl"
+sort -n "$results/elapsed.txt" | awk '{ a[NR] = $1 } END { printf "median: %d ms, p99: %d ms\n", a[int(NR * 0.5) + 1], a[int(NR * 0.99) + 1] }'
+rm "$results/elapsed.txt"
+echo "report: $results/report/index.html"
@@ -1,8 +1,13 @@
+import java.io.IOException;
 import java.util.GregorianCalendar;
 
 import models.Question;
 import models.SysInfo;
 import models.User;
+import models.database.importers.CorpusGenerator;
+import models.helpers.Analyzer;
+import models.helpers.Mapper;
+import play.Play;
 import play.jobs.Job;
 import play.jobs.OnApplicationStart;
 import controllers.Application;
@@ -22,6 +27,27 @@ public class Bootstrap extends Job {
 		 */
 		SysInfo.setTestMode(false);
 
+		// scan large databases with all available processors
+		Mapper.setParallel(Boolean.parseBoolean(Play.configuration
+				.getProperty("qa.parallel", "false")), Integer.parseInt(Play
+				.configuration.getProperty("qa.parallel.threshold", "10000")));
+
+		// analyze all content in the site's (first) language
+		Analyzer.set(Analyzer.forLanguage(Play.configuration.getProperty(
+				"qa.search.language",
+				Play.configuration.getProperty("application.langs", "en")
+						.split(",")[0].trim())));
+
+		// reuse the search index stored before the last restart
+		try {
+			Database.questions().openSearchIndex(
+					Play.getFile(Play.configuration.getProperty(
+							"qa.search.index", "data/search.idx")));
+		} catch (IOException e) {
+			// a missing index is simply rebuilt from scratch
+			e.printStackTrace();
+		}
+
 		// User
 		User jack = Database.users().register("Jack", "jack",
 				"jack@example.com");
@@ -70,10 +96,29 @@ public class Bootstrap extends Job {
 
 		// try to import some more questions, answers, etc.
 		try {
-			Database.importXML(play.Play.getFile("conf/fixtures/QA.xml"));
+			Database.importXML(Play.getFile("conf/fixtures/QA.xml"));
 		} catch (Exception e) {
 			// handle all exceptions the same way (all failures aren't fatal)
 			e.printStackTrace();
 		}
+
+		// optionally add a large synthetic data set (for load tests)
+		int questions = Integer.parseInt(Play.configuration.getProperty(
+				"qa.corpus.questions", "0"));
+		if (questions > 0) {
+			Database.generate(new CorpusGenerator(Long.parseLong(Play
+					.configuration.getProperty("qa.corpus.seed", "42")), Math
+					.max(10, questions / 10), questions, Math.max(100,
+					questions / 100)));
+		}
+
+		// compare all the loaded questions to the stored search index in the
+		// background instead of on the first search
+		new Job() {
+			@Override
+			public void doJob() {
+				Database.questions().flushSearchIndex();
+			}
+		}.now();
 	}
 }
@@ -0,0 +1,15 @@
+import play.jobs.Every;
+import play.jobs.Job;
+import controllers.Database;
+
+@Every("5mn")
+public class MergeSearchIndexJob extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		// store recently indexed questions in the segment file, so that
+		// they don't have to be analyzed again after a restart
+		Database.questions().mergeSearchIndex();
+	}
+
+}
@@ -6,11 +6,13 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import models.Answer;
 import models.Comment;
 import models.Notification;
 import models.Question;
+import models.SearchResult;
 import models.Tag;
 import models.TimeTracker;
 import models.User;
@@ -31,6 +33,7 @@ import play.libs.Images;
 public class Application extends BaseController {
 
 	private static final int entriesPerPage = 15;
+	private static final int facetsPerPage = 10;
 	public static final TimeTracker timeTracker = new TimeTracker();
 
 	/**
@@ -53,8 +56,9 @@ public class Application extends BaseController {
 		}
 		int maxIndex = Tools.determineMaximumIndex(questions, entriesPerPage);
 		questions = Tools.paginate(questions, entriesPerPage, index);
+		List<Tag> trending = Database.tags().getTrendingTags(10);
 
-		render(questions, index, maxIndex);
+		render(questions, index, maxIndex, trending);
 	}
 
 	/**
@@ -262,6 +266,9 @@ public class Application extends BaseController {
 	 * Renders a JSON list combining all the currently used tags starting with a
 	 * given term and the most often used words in a given (question's) content.
 	 * This list can be used for implementing client-side tag autocompletion.
+	 * Only the 20 most often used tags are listed, and the words found in a
+	 * given content are cached for a few minutes, as the content is sent along
+	 * with each keystroke.
 	 * 
 	 * @param term
 	 *            the part of the tag a user has already entered and that is
@@ -271,9 +278,18 @@ public class Application extends BaseController {
 	 *            occurring words that might also be useful as tags
 	 */
 	public static void tags(String term, String content) {
-		List<String> tags = Database.tags().suggestTagNames(term);
+		// only offer the most often used tags
+		List<String> tags = Database.tags().suggestTagNames(term, 20);
 		if (content != null) {
-			tags.addAll(Tools.extractImportantWords(content));
+			// the content hardly changes between two keystrokes
+			String key = "tags.words." + Tools.digest(content, "SHA-1");
+			List<String> words = (List<String>) Cache.get(key);
+			if (words == null) {
+				words = new ArrayList<String>(Tools
+						.extractImportantWords(content));
+				Cache.set(key, words, "10mn");
+			}
+			tags.addAll(words);
 		}
 		renderJSON(tags);
 	}
@@ -290,10 +306,9 @@ public class Application extends BaseController {
 	 *            the page-number which will be displayed.
 	 */
 	public static void search(String term, int index) {
-		List<Question> results = (List<Question>) Cache.get("search." + term);
 		User user = Session.user();
 		boolean isPureTagSearch = term.matches("^tag:\\S+$");
-		boolean isRepeatedSearch = results != null;
+		boolean isRepeatedSearch = Database.questions().isCached(term);
 
 		if (isRepeatedSearch) {
 			// we've already done this search lately, so we can
@@ -313,16 +328,17 @@ public class Application extends BaseController {
 			index(0);
 		}
 
-		if (results == null) {
-			results = Database.questions().searchFor(term);
-			Cache.set("search." + term, results, "5mn");
-		}
-		int maxIndex = Tools.determineMaximumIndex(results, entriesPerPage);
-		results = Tools.paginate(results, entriesPerPage, index);
+		// only fetch the results for the requested page
+		SearchResult result = Database.questions().searchFor(term,
+				index * entriesPerPage, entriesPerPage, facetsPerPage);
+		int maxIndex = Tools.determineMaximumIndex(result.getTotal(),
+				entriesPerPage);
+		List<Question> results = result.getQuestions();
+		Map<String, Integer> facets = result.getFacets();
 		if (user != null && !isPureTagSearch && !isRepeatedSearch) {
 			user.setLastSearch(term);
 		}
-		render(results, term, index, maxIndex);
+		render(results, facets, term, index, maxIndex);
 	}
 
 	/**
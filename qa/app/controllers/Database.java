@@ -10,6 +10,7 @@ import models.database.IQuestionDatabase;
 import models.database.ITagDatabase;
 import models.database.IUserDatabase;
 import models.database.HotDatabase.HotDatabase;
+import models.database.importers.CorpusGenerator;
 
 import org.xml.sax.SAXException;
 
@@ -89,4 +90,14 @@ public class Database {
 			ParserConfigurationException {
 		instance.importXML(file);
 	}
+
+	/**
+	 * Adds a synthetic data set to the database (e.g. for load tests).
+	 * 
+	 * @param generator
+	 *            the generator describing the data set
+	 */
+	public static void generate(CorpusGenerator generator) {
+		generator.generate(instance);
+	}
 }
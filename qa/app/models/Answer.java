@@ -36,6 +36,16 @@ public class Answer extends Entry {
 		super.delete();
 	}
 
+	/**
+	 * Changes to an answer are changes to its question as well.
+	 * 
+	 * @see models.Entry#changed(java.lang.Object)
+	 */
+	@Override
+	protected void changed(Object cause) {
+		this.question.changed(cause);
+	}
+
 	/**
 	 * Get the {@link Question} belonging to the <code>Answer</code>.
 	 * 
@@ -0,0 +1,67 @@
+package models;
+
+import java.util.Collection;
+
+/**
+ * Rates questions according to the Okapi BM25 ranking function: terms
+ * appearing often in a question but rarely in the other questions count most,
+ * while the influence of the question's length is normalized by the average
+ * question length.
+ */
+public class BM25Scorer implements IScorer {
+
+	/** How quickly additional occurrences of a term stop counting. */
+	private final double k1;
+
+	/** How strongly a question's length is normalized (0 to 1). */
+	private final double b;
+
+	/**
+	 * Instantiates a new scorer with the usual parameters k1 = 1.2 and b =
+	 * 0.75.
+	 */
+	public BM25Scorer() {
+		this(1.2, 0.75);
+	}
+
+	/**
+	 * Instantiates a new scorer.
+	 * 
+	 * @param k1
+	 *            the term frequency saturation parameter
+	 * @param b
+	 *            the length normalization parameter
+	 */
+	public BM25Scorer(double k1, double b) {
+		this.k1 = k1;
+		this.b = b;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see models.IScorer#score(models.SearchIndex, models.Question,
+	 * java.util.Collection)
+	 */
+	public double score(SearchIndex index, Question question,
+			Collection<String> terms) {
+		int count = index.count();
+		double averageLength = index.averageDocumentLength();
+		if (count == 0 || averageLength == 0)
+			return 0;
+		double lengthRatio = index.documentLength(question) / averageLength;
+
+		double score = 0;
+		for (String term : terms) {
+			int tf = index.termFrequency(term, question);
+			if (tf == 0) {
+				continue;
+			}
+			int df = index.documentFrequency(term);
+			double idf = Math.log(1 + (count - df + 0.5) / (df + 0.5));
+			score += idf * tf * (this.k1 + 1)
+					/ (tf + this.k1 * (1 - this.b + this.b * lengthRatio));
+		}
+		return score;
+	}
+}
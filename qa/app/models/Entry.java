@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import models.helpers.ICleanup;
@@ -23,6 +24,8 @@ public abstract class Entry extends Item implements Comparable<Entry>,
 
 	private final String content;
 	private String contentText, contentHtml;
+	private Map<String, Integer> words;
+	private Map<String, int[]> positions;
 	private final HashMap<Integer, Comment> comments;
 	private final HashMap<User, Vote> votes;
 	private final Set<Notification> notifications;
@@ -85,6 +88,7 @@ public abstract class Entry extends Item implements Comparable<Entry>,
 		} else if (item instanceof Vote) {
 			this.votes.remove(item.owner());
 			this.cachedRating -= ((Vote) item).up() ? 1 : -1;
+			this.changed(item);
 		} else if (item instanceof Notification) {
 			this.notifications.remove(item);
 		}
@@ -113,6 +117,63 @@ public abstract class Entry extends Item implements Comparable<Entry>,
 		return this.contentText;
 	}
 
+	/**
+	 * Gets the words of this <code>Entry</code>'s content and of its owner's
+	 * name (without any stop words), as they're used for searching. The set is
+	 * only calculated once (and again after the owner changes) and must not be
+	 * modified.
+	 * 
+	 * @return the set of all words used in this <code>Entry</code>
+	 */
+	public Set<String> getWords() {
+		return this.getWordCounts().keySet();
+	}
+
+	/**
+	 * Gets the words of this <code>Entry</code> (see <code>getWords</code>)
+	 * together with the number of times each word occurs.
+	 * 
+	 * @return an unmodifiable map of words and their frequencies
+	 */
+	public Map<String, Integer> getWordCounts() {
+		if (this.words == null) {
+			String content = this.getContentText();
+			if (this.owner() != null) {
+				content += " " + this.owner().getName();
+			}
+			this.words = Collections.unmodifiableMap(SearchFilter
+					.countWords(content));
+		}
+		return this.words;
+	}
+
+	/**
+	 * Gets the positions at which the words of this <code>Entry</code>'s
+	 * content occur (counted in words, including stop words), as they're used
+	 * for searching for phrases. The owner's name isn't included. The map is
+	 * only calculated once and must not be modified.
+	 * 
+	 * @return an unmodifiable map of words and their ascending positions
+	 */
+	public Map<String, int[]> getPositions() {
+		if (this.positions == null) {
+			this.positions = Collections.unmodifiableMap(SearchFilter
+					.findPositions(this.getContentText()));
+		}
+		return this.positions;
+	}
+
+	/**
+	 * Forgets the words of the owner's name along with the owner.
+	 * 
+	 * @see models.Item#unregisterUser()
+	 */
+	@Override
+	protected void unregisterUser() {
+		super.unregisterUser();
+		this.words = null;
+	}
+
 	/**
 	 * This is a comment-Factory method that creates a new {@link Comment} to
 	 * this <code>Entry</code> and adds it to the <code>Entry</code>'s list of
@@ -317,6 +378,7 @@ public abstract class Entry extends Item implements Comparable<Entry>,
 		Vote vote = new Vote(user, this, up);
 		this.votes.put(user, vote);
 		this.cachedRating += up ? 1 : -1;
+		this.changed(vote);
 		return vote;
 	}
 
@@ -324,7 +386,26 @@ public abstract class Entry extends Item implements Comparable<Entry>,
 	 * Turns this Entry into an anonymous (user-less) one.
 	 */
 	public void anonymize() {
+		// the votes for this entry no longer support its former owner
+		for (Vote vote : this.votes.values()) {
+			vote.count(false);
+		}
 		this.unregisterUser();
+		for (Vote vote : this.votes.values()) {
+			vote.count(true);
+		}
+		this.changed(this);
+	}
+
+	/**
+	 * Called whenever something about this <code>Entry</code> changes that
+	 * might be of interest to whoever keeps track of it (e.g. a search index).
+	 * Subclasses forward this to where they're tracked.
+	 * 
+	 * @param cause
+	 *            what changed (e.g. this entry itself or a new answer)
+	 */
+	protected void changed(Object cause) {
 	}
 
 	/**
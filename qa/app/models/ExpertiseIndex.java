@@ -0,0 +1,284 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import models.helpers.RankedSet;
+
+/**
+ * Keeps for all tags the vote counts of all the users that have answered a
+ * question labeled with that tag, so that a user's expertise can be
+ * determined without having to look at every single question and answer.
+ * 
+ * Each question's contribution to the statistics is remembered, so that
+ * whenever a question, its answers, their votes or the question's tags change
+ * (see <code>update</code>), only that question has to be looked at again.
+ * Looking up a user's expertise then only costs as much as the number of tags
+ * the user has answered questions for.
+ * 
+ * The answerers of each tag are additionally kept ranked by their vote counts
+ * (see {@link RankedSet}), so that both the vote count needed for being an
+ * expert and the top experts of a tag can be looked up without sorting.
+ */
+public class ExpertiseIndex {
+
+	/**
+	 * Having given a best answer gives the equivalent of an additional
+	 * BEST_ANSWER_BONUS votes.
+	 */
+	public static final int BEST_ANSWER_BONUS = 5;
+
+	/**
+	 * Having less than MINIMAL_EXPERTISE_THRESHOLD votes on a topic prevents a
+	 * user from being an expert.
+	 */
+	public static final int MINIMAL_EXPERTISE_THRESHOLD = 2;
+
+	/**
+	 * What percentage of most proficient users are considered experts on a
+	 * topic.
+	 */
+	public static final int EXPERTISE_PERCENTILE = 20;
+
+	/**
+	 * The vote count of a user for a tag together with the number of questions
+	 * it has been collected from.
+	 */
+	private static class Score {
+		private final User user;
+		private int votes;
+		private int questions;
+
+		private Score(User user) {
+			this.user = user;
+		}
+	}
+
+	/**
+	 * Orders scores by their vote counts (and scores with the same vote count
+	 * by their users' names in reverse, so that the top experts with the same
+	 * vote count are listed alphabetically).
+	 */
+	private static final Comparator<Score> byVotes = new Comparator<Score>() {
+		public int compare(Score a, Score b) {
+			if (a.votes != b.votes)
+				return a.votes < b.votes ? -1 : 1;
+			int cmp = b.user.getName().compareTo(a.user.getName());
+			if (cmp != 0)
+				return cmp;
+			int ha = System.identityHashCode(a.user);
+			int hb = System.identityHashCode(b.user);
+			return ha < hb ? -1 : ha == hb ? 0 : 1;
+		}
+	};
+
+	/** For each question the vote counts it contributes for each answerer. */
+	private final Map<Question, Map<User, Integer>> contributions = new HashMap<Question, Map<User, Integer>>();
+
+	/** For each question the tags it contributes to. */
+	private final Map<Question, List<Tag>> questionTags = new HashMap<Question, List<Tag>>();
+
+	/** For each tag the vote counts of all its answerers. */
+	private final Map<Tag, Map<User, Score>> stats = new HashMap<Tag, Map<User, Score>>();
+
+	/** For each user all the tags the user has answered questions for. */
+	private final Map<User, Set<Tag>> userTags = new HashMap<User, Set<Tag>>();
+
+	/** For each tag the scores of all its answerers ordered by vote count. */
+	private final Map<Tag, RankedSet<Score>> rankings = new HashMap<Tag, RankedSet<Score>>();
+
+	/**
+	 * Updates the statistics after a question, its answers, their votes or the
+	 * question's tags have changed (or after the question has been added).
+	 * 
+	 * @param question
+	 *            the question whose contribution to count (again)
+	 */
+	public synchronized void update(Question question) {
+		this.remove(question);
+		List<Tag> tags = new ArrayList<Tag>(question.getTags());
+		// skip untagged questions
+		if (tags.isEmpty())
+			return;
+		Map<User, Integer> contribution = new HashMap<User, Integer>();
+		for (Answer answer : question.answers()) {
+			User user = answer.owner();
+			// don't consider answers by the question's author and by
+			// anonymous users
+			if (user == question.owner() || user == null)
+				continue;
+			Integer count = contribution.get(user);
+			if (count == null)
+				count = 0;
+			// a best answer count as 5 additional up-votes
+			if (answer.isBestAnswer())
+				count += BEST_ANSWER_BONUS;
+			contribution.put(user, count + answer.rating());
+		}
+		if (contribution.isEmpty())
+			return;
+
+		this.contributions.put(question, contribution);
+		this.questionTags.put(question, tags);
+		for (Tag tag : tags) {
+			Map<User, Score> tagStats = this.stats.get(tag);
+			if (tagStats == null) {
+				tagStats = new HashMap<User, Score>();
+				this.stats.put(tag, tagStats);
+				this.rankings.put(tag, new RankedSet<Score>(byVotes));
+			}
+			RankedSet<Score> ranking = this.rankings.get(tag);
+			for (Map.Entry<User, Integer> entry : contribution.entrySet()) {
+				User user = entry.getKey();
+				Score score = tagStats.get(user);
+				if (score == null) {
+					score = new Score(user);
+					tagStats.put(user, score);
+					Set<Tag> known = this.userTags.get(user);
+					if (known == null) {
+						known = new HashSet<Tag>();
+						this.userTags.put(user, known);
+					}
+					known.add(tag);
+				} else {
+					ranking.remove(score);
+				}
+				score.votes += entry.getValue();
+				score.questions++;
+				ranking.add(score);
+			}
+		}
+	}
+
+	/**
+	 * Removes a question's contribution from the statistics.
+	 * 
+	 * @param question
+	 *            the question which has been deleted
+	 */
+	public synchronized void remove(Question question) {
+		Map<User, Integer> contribution = this.contributions.remove(question);
+		List<Tag> tags = this.questionTags.remove(question);
+		if (contribution == null)
+			return;
+		for (Tag tag : tags) {
+			Map<User, Score> tagStats = this.stats.get(tag);
+			RankedSet<Score> ranking = this.rankings.get(tag);
+			for (Map.Entry<User, Integer> entry : contribution.entrySet()) {
+				User user = entry.getKey();
+				Score score = tagStats.get(user);
+				ranking.remove(score);
+				score.votes -= entry.getValue();
+				if (--score.questions > 0) {
+					ranking.add(score);
+				} else {
+					tagStats.remove(user);
+					Set<Tag> known = this.userTags.get(user);
+					known.remove(tag);
+					if (known.isEmpty()) {
+						this.userTags.remove(user);
+					}
+				}
+			}
+			if (tagStats.isEmpty()) {
+				this.stats.remove(tag);
+				this.rankings.remove(tag);
+			}
+		}
+	}
+
+	/**
+	 * Drops all the statistics.
+	 */
+	public synchronized void clear() {
+		this.contributions.clear();
+		this.questionTags.clear();
+		this.stats.clear();
+		this.userTags.clear();
+		this.rankings.clear();
+	}
+
+	/**
+	 * @return a copy of the vote counts of all the answerers for all tags
+	 */
+	public synchronized Map<Tag, Map<User, Integer>> getStatistics() {
+		Map<Tag, Map<User, Integer>> copy = new HashMap<Tag, Map<User, Integer>>();
+		for (Map.Entry<Tag, Map<User, Score>> tag : this.stats.entrySet()) {
+			Map<User, Integer> tagStats = new HashMap<User, Integer>();
+			for (Map.Entry<User, Score> user : tag.getValue().entrySet()) {
+				tagStats.put(user.getKey(), user.getValue().votes);
+			}
+			copy.put(tag.getKey(), tagStats);
+		}
+		return copy;
+	}
+
+	/**
+	 * Determines all the tags a user is an expert for, i.e. the tags for which
+	 * the user has got at least MINIMAL_EXPERTISE_THRESHOLD votes and a vote
+	 * count among the EXPERTISE_PERCENTILE percent highest ones.
+	 * 
+	 * @param user
+	 *            the user to determine the expertise for
+	 * @return the sorted list of tags for which this user is an expert
+	 */
+	public synchronized List<Tag> getExpertise(User user) {
+		List<Tag> expertise = new ArrayList<Tag>();
+		Set<Tag> known = this.userTags.get(user);
+		if (known == null)
+			return expertise;
+		for (Tag tag : known) {
+			int votes = this.stats.get(tag).get(user).votes;
+			// ignore tags this user knows hardly anything about
+			if (votes < MINIMAL_EXPERTISE_THRESHOLD) {
+				continue;
+			}
+			if (votes >= this.getThreshold(tag)) {
+				expertise.add(tag);
+			}
+		}
+		Collections.sort(expertise);
+		return expertise;
+	}
+
+	/**
+	 * Gets the users with the highest vote counts for a tag.
+	 * 
+	 * @param tag
+	 *            the tag to get the top answerers for
+	 * @param k
+	 *            the maximum number of users to return
+	 * @return the (at most) <code>k</code> users with the most votes for this
+	 *         tag, the one with the most votes first
+	 */
+	public synchronized List<User> getTopExperts(Tag tag, int k) {
+		List<User> experts = new ArrayList<User>();
+		RankedSet<Score> ranking = this.rankings.get(tag);
+		if (ranking == null)
+			return experts;
+		for (int i = ranking.size() - 1; i >= 0 && experts.size() < k; i--) {
+			experts.add(ranking.get(i).user);
+		}
+		return experts;
+	}
+
+	/**
+	 * Gets the lowest vote count among the EXPERTISE_PERCENTILE percent most
+	 * proficient answerers for a tag.
+	 * 
+	 * @param tag
+	 *            a tag with at least one answerer
+	 * @return the lowest vote count an expert for this tag can have
+	 */
+	private int getThreshold(Tag tag) {
+		RankedSet<Score> ranking = this.rankings.get(tag);
+		int threshold = (100 - EXPERTISE_PERCENTILE) * ranking.size() / 100;
+		return ranking.get(threshold).votes;
+	}
+}
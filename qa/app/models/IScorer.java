@@ -0,0 +1,25 @@
+package models;
+
+import java.util.Collection;
+
+/**
+ * A scorer rates how relevant a question is for a set of search terms, solely
+ * based on the statistics kept by a {@link SearchIndex} (so that scoring a
+ * question never requires looking at its raw content).
+ */
+public interface IScorer {
+
+	/**
+	 * Rates a question for the given search terms.
+	 * 
+	 * @param index
+	 *            the index containing the question's statistics
+	 * @param question
+	 *            the question to rate
+	 * @param terms
+	 *            the search terms (lowercase and without stop words)
+	 * @return a relevance score, higher meaning more relevant
+	 */
+	public double score(SearchIndex index, Question question,
+			Collection<String> terms);
+}
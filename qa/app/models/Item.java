@@ -75,7 +75,14 @@ public abstract class Item {
 	 *            the new timestamp
 	 */
 	public void setTimestamp(Date timestamp) {
+		// the owner keeps its items ordered by their timestamps
+		if (this.owner != null) {
+			this.owner.unindex(this);
+		}
 		this.timestamp = timestamp;
+		if (this.owner != null) {
+			this.owner.index(this);
+		}
 	}
 
 	/**
@@ -1,6 +1,7 @@
 package models;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -8,6 +9,7 @@ import java.util.HashSet;
 import java.util.List;
 
 import models.database.ITagDatabase;
+import models.helpers.IChangeListener;
 import models.helpers.ICleanup;
 import models.helpers.IObservable;
 import models.helpers.IObserver;
@@ -27,8 +29,11 @@ public class Question extends Entry implements IObservable {
 	private Answer bestAnswer;
 	private Date settingOfBestAnswer;
 	private final ArrayList<Tag> tags = new ArrayList<Tag>();
+	/** The IDs of all the tags in ascending order (see {@link Tag#id()}). */
+	private int[] tagIds = new int[0];
 	private final ITagDatabase tagDB;
 	private final ICleanup<Question> cleaner;
+	private final IChangeListener<Question> listener;
 
 	protected HashSet<IObserver> observers;
 
@@ -46,19 +51,43 @@ public class Question extends Entry implements IObservable {
 	 * @param cleaner
 	 *            an optional clean-up object that wants to be notified when
 	 *            this question is no longer needed
+	 * @param listener
+	 *            an optional object that wants to be notified whenever this
+	 *            question, its answers or its tags change (e.g. for keeping a
+	 *            search index up to date)
 	 */
 	public Question(User owner, String content, ITagDatabase tagDB,
-			ICleanup<Question> cleaner) {
+			ICleanup<Question> cleaner, IChangeListener<Question> listener) {
 		super(owner, content);
 		this.answers = new HashMap<Integer, Answer>();
 		this.observers = new HashSet<IObserver>();
 		this.tagDB = tagDB;
 		this.cleaner = cleaner;
+		this.listener = listener;
 		// all users watch their own questions by default
 		if (owner != null)
 			owner.startObserving(this);
 	}
 
+	/**
+	 * Create a Question which isn't tracked by any kind of index.
+	 * 
+	 * @param owner
+	 *            the {@link User} who posted the <code>Question</code>
+	 * @param content
+	 *            the question
+	 * @param tagDB
+	 *            an optional tag database in which to store tags associated
+	 *            with this question
+	 * @param cleaner
+	 *            an optional clean-up object that wants to be notified when
+	 *            this question is no longer needed
+	 */
+	public Question(User owner, String content, ITagDatabase tagDB,
+			ICleanup<Question> cleaner) {
+		this(owner, content, tagDB, cleaner, null);
+	}
+
 	/**
 	 * Constructor for questions not registered in any kind of database (for
 	 * testing only).
@@ -99,10 +128,23 @@ public class Question extends Entry implements IObservable {
 	public void cleanUp(Item item) {
 		if (item instanceof Answer) {
 			this.answers.remove(item.id());
+			this.changed(item);
 		}
 		super.cleanUp(item);
 	}
 
+	/**
+	 * Informs the listener about changes to this question or its answers.
+	 * 
+	 * @see models.Entry#changed(java.lang.Object)
+	 */
+	@Override
+	protected void changed(Object cause) {
+		if (this.listener != null) {
+			this.listener.changed(this, cause);
+		}
+	}
+
 	/**
 	 * Factory method that creates a new {@link Answer} to this
 	 * <code>Question</code>, stores the answer in the question's list of
@@ -118,6 +160,7 @@ public class Question extends Entry implements IObservable {
 	public Answer answer(User user, String content) {
 		Answer answer = new Answer(user, this, content);
 		this.answers.put(answer.id(), answer);
+		this.changed(answer);
 		// make users aware of this new answer
 		this.notifyObservers(answer);
 		return answer;
@@ -146,6 +189,16 @@ public class Question extends Entry implements IObservable {
 		return list;
 	}
 
+	/**
+	 * Counts the {@link Answer}s to a <code>Question</code> (without having to
+	 * sort them first).
+	 * 
+	 * @return the number of answers
+	 */
+	public int countAnswers() {
+		return this.answers.size();
+	}
+
 	/**
 	 * Get a specific {@link Answer} to a <code>Question</code>.
 	 * 
@@ -193,6 +246,7 @@ public class Question extends Entry implements IObservable {
 		}
 		this.bestAnswer = bestAnswer;
 		this.settingOfBestAnswer = SysInfo.now();
+		this.changed(this);
 		return true;
 	}
 
@@ -259,8 +313,11 @@ public class Question extends Entry implements IObservable {
 		}
 		this.tags.clear();
 
-		if (tags == null || tags.equals(""))
+		if (tags == null || tags.equals("")) {
+			this.tagIds = new int[0];
+			this.changed(this);
 			return;
+		}
 
 		String bits[] = tags.split("[\\s,]+");
 		for (String bit : bits) {
@@ -277,6 +334,13 @@ public class Question extends Entry implements IObservable {
 			}
 		}
 		Collections.sort(this.tags);
+		int[] ids = new int[this.tags.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = this.tags.get(i).id();
+		}
+		Arrays.sort(ids);
+		this.tagIds = ids;
+		this.changed(this);
 	}
 
 	/*
@@ -288,6 +352,39 @@ public class Question extends Entry implements IObservable {
 		return (List<Tag>) this.tags.clone();
 	}
 
+	/**
+	 * Gets the IDs of all tags of this question without copying them (so the
+	 * returned array must not be modified).
+	 * 
+	 * @return the tag IDs in ascending order
+	 */
+	public int[] getTagIds() {
+		return this.tagIds;
+	}
+
+	/**
+	 * Counts the tags this question has in common with a set of tags.
+	 * 
+	 * @param ids
+	 *            the IDs of the tags to compare with in ascending order
+	 * @return the number of tags both have
+	 */
+	public int countCommonTags(int[] ids) {
+		int common = 0;
+		for (int i = 0, j = 0; i < this.tagIds.length && j < ids.length;) {
+			if (this.tagIds[i] < ids[j]) {
+				i++;
+			} else if (this.tagIds[i] > ids[j]) {
+				j++;
+			} else {
+				common++;
+				i++;
+				j++;
+			}
+		}
+		return common;
+	}
+
 	/**
 	 * @see models.helpers.IObservable#addObserver(models.IObserver)
 	 */
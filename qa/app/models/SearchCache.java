@@ -0,0 +1,358 @@
+package models;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * A cache for search results, keyed by the normalized search (see
+ * {@link SearchQuery#getKey()}). Only the IDs of the found questions are kept,
+ * so that cached results never hold on to deleted questions nor to stale
+ * copies of changed ones.
+ * 
+ * Each result is remembered together with the terms it depends on, so that
+ * it can be dropped exactly when a question containing one of these terms is
+ * added, changed or removed (see <code>invalidate</code>). Only the least
+ * recently used <code>capacity</code> results are kept.
+ */
+public class SearchCache {
+
+	/**
+	 * The cached IDs of the questions found by a search, together with what's
+	 * needed for deciding when they become outdated.
+	 */
+	public static class CachedSearch {
+
+		/** The IDs of the best matching questions in order of relevance. */
+		private final List<Integer> ids;
+
+		/** The total number of questions found. */
+		private final int total;
+
+		/** The most frequent tags among the questions found. */
+		private final Map<String, Integer> facets;
+
+		/** The number of most frequent tags that have been counted. */
+		private final int facetCount;
+
+		/** The terms the result depends on. */
+		private final Set<String> terms;
+
+		/** The prefixes the result depends on. */
+		private final Set<String> prefixes;
+
+		/** The unknown words which were replaced by similar terms. */
+		private final Set<String> misspelled;
+
+		/**
+		 * Remembers the result of a search.
+		 * 
+		 * @param ids
+		 *            the IDs of the best matching questions in order of
+		 *            relevance
+		 * @param total
+		 *            the total number of questions found (at least the
+		 *            number of IDs)
+		 * @param facets
+		 *            the most frequent tags among the questions found and
+		 *            their counts
+		 * @param facetCount
+		 *            the number of most frequent tags that have been counted
+		 * @param terms
+		 *            all the terms the result depends on
+		 * @param prefixes
+		 *            all the prefixes the result depends on (i.e. any new
+		 *            term starting with one of these affects the result)
+		 * @param misspelled
+		 *            all the words which were corrected (i.e. any new term
+		 *            similar to one of these affects the result)
+		 */
+		public CachedSearch(List<Integer> ids, int total,
+				Map<String, Integer> facets, int facetCount,
+				Collection<String> terms, Collection<String> prefixes,
+				Collection<String> misspelled) {
+			this.ids = ids;
+			this.total = total;
+			this.facets = facets;
+			this.facetCount = facetCount;
+			this.terms = new HashSet<String>(terms);
+			this.prefixes = new HashSet<String>(prefixes);
+			this.misspelled = new HashSet<String>(misspelled);
+		}
+
+		/**
+		 * @return the IDs of the best matching questions
+		 */
+		public List<Integer> getIds() {
+			return this.ids;
+		}
+
+		/**
+		 * @return the total number of questions found
+		 */
+		public int getTotal() {
+			return this.total;
+		}
+
+		/**
+		 * Gets the most frequent tags among the questions found.
+		 * 
+		 * @param count
+		 *            the maximum number of tags to return
+		 * @return the tag names and their counts, the most frequent first
+		 */
+		public Map<String, Integer> getFacets(int count) {
+			Map<String, Integer> facets = new LinkedHashMap<String, Integer>();
+			for (Map.Entry<String, Integer> facet : this.facets.entrySet()) {
+				if (facets.size() >= count) {
+					break;
+				}
+				facets.put(facet.getKey(), facet.getValue());
+			}
+			return facets;
+		}
+
+		/**
+		 * Checks whether a change to the questions containing a term might
+		 * change this result.
+		 * 
+		 * @param term
+		 *            the term whose questions have changed
+		 * @return true, if this result has to be recalculated
+		 */
+		private boolean dependsOn(String term) {
+			if (this.terms.contains(term))
+				return true;
+			for (String prefix : this.prefixes)
+				if (term.startsWith(prefix))
+					return true;
+			for (String word : this.misspelled)
+				if (SearchIndex.getDistance(word, term) <= SearchIndex
+						.getMaxDistance(word))
+					return true;
+			return false;
+		}
+	}
+
+	/** The cached results, least recently used first. */
+	private final LinkedHashMap<String, CachedSearch> results;
+
+	/** For each term all the cached searches whose terms include it. */
+	private final Map<String, Set<String>> searches = new HashMap<String, Set<String>>();
+
+	/** For each prefix all the cached searches including it. */
+	private final Map<String, Set<String>> byPrefix = new HashMap<String, Set<String>>();
+
+	/**
+	 * For each trigram of a corrected word all the cached searches including
+	 * that word (as only terms sharing a trigram with a word can be found as
+	 * its corrections, see {@link SearchIndex#correct(String)}).
+	 */
+	private final Map<String, Set<String>> byTrigram = new HashMap<String, Set<String>>();
+
+	/** The maximum number of search results to keep. */
+	private final int capacity;
+
+	/**
+	 * The number of times the cache has been invalidated, so that results
+	 * computed in the meantime aren't cached (see <code>put</code>).
+	 */
+	private long generation = 0;
+
+	/**
+	 * Creates a new empty cache.
+	 * 
+	 * @param capacity
+	 *            the maximum number of search results to keep
+	 */
+	public SearchCache(int capacity) {
+		this.results = new LinkedHashMap<String, CachedSearch>(16, 0.75f, true);
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Looks up a cached search result.
+	 * 
+	 * @param key
+	 *            the normalized search
+	 * @param count
+	 *            the number of best matching questions required
+	 * @param facets
+	 *            the number of most frequent tags required
+	 * @return the cached result or <code>null</code>, if the search hasn't
+	 *         been cached (or only fewer than <code>count</code> of its
+	 *         results or <code>facets</code> of its tags have been)
+	 */
+	public synchronized CachedSearch get(String key, int count, int facets) {
+		CachedSearch cached = this.results.get(key);
+		if (cached == null || cached.ids.size() < count
+				&& cached.ids.size() < cached.total
+				|| cached.facetCount < facets)
+			return null;
+		return cached;
+	}
+
+	/**
+	 * Checks whether the result of a search is currently cached.
+	 * 
+	 * @param key
+	 *            the normalized search
+	 * @return true, if the search has lately been done
+	 */
+	public synchronized boolean contains(String key) {
+		return this.results.containsKey(key);
+	}
+
+	/**
+	 * @return the current generation of the cache, which changes whenever
+	 *         cached results are invalidated
+	 */
+	public synchronized long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * Caches a search result (replacing any previous result for the same
+	 * search), unless the cache has been invalidated while the result was
+	 * computed, as the result might then already be outdated.
+	 * 
+	 * @param key
+	 *            the normalized search
+	 * @param cached
+	 *            the result to cache
+	 * @param generation
+	 *            the generation of the cache before the result was computed
+	 *            (see <code>getGeneration</code>)
+	 */
+	public synchronized void put(String key, CachedSearch cached,
+			long generation) {
+		if (generation != this.generation)
+			return;
+		this.remove(key);
+		this.results.put(key, cached);
+		for (String term : cached.terms) {
+			add(this.searches, term, key);
+		}
+		for (String prefix : cached.prefixes) {
+			add(this.byPrefix, prefix, key);
+		}
+		for (String word : cached.misspelled) {
+			for (String trigram : SearchIndex.getTrigrams(word)) {
+				add(this.byTrigram, trigram, key);
+			}
+		}
+		if (this.results.size() > this.capacity) {
+			this.remove(this.results.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Drops all the cached results which might change because the questions
+	 * containing one of the given terms have changed.
+	 * 
+	 * @param terms
+	 *            the terms of all the questions which have been added,
+	 *            changed or removed
+	 */
+	public synchronized void invalidate(Collection<String> terms) {
+		if (terms.isEmpty())
+			return;
+		this.generation++;
+		Set<String> outdated = new HashSet<String>();
+		for (String term : terms) {
+			Set<String> keys = this.searches.get(term);
+			if (keys != null) {
+				outdated.addAll(keys);
+			}
+			for (int length = 1; length <= term.length(); length++) {
+				keys = this.byPrefix.get(term.substring(0, length));
+				if (keys != null) {
+					outdated.addAll(keys);
+				}
+			}
+			// only the searches sharing a trigram with the term have to be
+			// checked for similar words
+			for (String trigram : SearchIndex.getTrigrams(term)) {
+				keys = this.byTrigram.get(trigram);
+				if (keys == null) {
+					continue;
+				}
+				for (String key : keys)
+					if (!outdated.contains(key)
+							&& this.results.get(key).dependsOn(term)) {
+						outdated.add(key);
+					}
+			}
+		}
+		for (String key : outdated) {
+			this.remove(key);
+		}
+	}
+
+	/**
+	 * @return the number of cached search results
+	 */
+	public synchronized int count() {
+		return this.results.size();
+	}
+
+	/**
+	 * Drops all the cached results.
+	 */
+	public synchronized void clear() {
+		this.generation++;
+		this.results.clear();
+		this.searches.clear();
+		this.byPrefix.clear();
+		this.byTrigram.clear();
+	}
+
+	/**
+	 * Drops a single cached result.
+	 * 
+	 * @param key
+	 *            the normalized search to forget
+	 */
+	private void remove(String key) {
+		CachedSearch cached = this.results.remove(key);
+		if (cached == null)
+			return;
+		for (String term : cached.terms) {
+			remove(this.searches, term, key);
+		}
+		for (String prefix : cached.prefixes) {
+			remove(this.byPrefix, prefix, key);
+		}
+		for (String word : cached.misspelled) {
+			for (String trigram : SearchIndex.getTrigrams(word)) {
+				remove(this.byTrigram, trigram, key);
+			}
+		}
+	}
+
+	private static void add(Map<String, Set<String>> index, String value,
+			String key) {
+		Set<String> keys = index.get(value);
+		if (keys == null) {
+			keys = new HashSet<String>();
+			index.put(value, keys);
+		}
+		keys.add(key);
+	}
+
+	private static void remove(Map<String, Set<String>> index, String value,
+			String key) {
+		Set<String> keys = index.get(value);
+		if (keys == null)
+			return;
+		keys.remove(key);
+		if (keys.isEmpty()) {
+			index.remove(value);
+		}
+	}
+}
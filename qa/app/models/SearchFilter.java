@@ -1,12 +1,16 @@
 package models;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import models.helpers.Analyzer;
 import models.helpers.IFilter;
-import models.helpers.SetOperations;
-import models.helpers.StopWords;
 
 /**
  * SearchFilter can be used as a Filter-Visitor that classifies a list of
@@ -25,10 +29,10 @@ public class SearchFilter implements IFilter<Question, Double> {
 	private final Set<String> queryFulltext;
 
 	/**
-	 * A set of tags to match. The more tags overlap, the higher a question will
-	 * be rated.
+	 * The IDs of a set of tags to match in ascending order. The more tags
+	 * overlap, the higher a question will be rated.
 	 */
-	private final Set<Tag> queryTags;
+	private final int[] queryTagIds;
 
 	/**
 	 * Instantiates a new search filter.
@@ -47,10 +51,16 @@ public class SearchFilter implements IFilter<Question, Double> {
 	 *            higher it's rated.
 	 */
 	public SearchFilter(Set<String> query, Set<Tag> tags) {
-		this.queryFulltext = query != null ? SetOperations.difference(query,
-				StopWords.get())
+		this.queryFulltext = query != null ? Analyzer.get().terms(query)
 				: null;
-		this.queryTags = tags;
+		this.queryTagIds = new int[tags == null ? 0 : tags.size()];
+		int i = 0;
+		if (tags != null) {
+			for (Tag tag : tags) {
+				this.queryTagIds[i++] = tag.id();
+			}
+		}
+		Arrays.sort(this.queryTagIds);
 	}
 
 	/**
@@ -91,23 +101,23 @@ public class SearchFilter implements IFilter<Question, Double> {
 	 *         tags
 	 */
 	private double rateTags(Question question, Set<String> mustHave) {
-		Set<Tag> tags = new HashSet<Tag>(question.getTags());
-		if (this.queryTags == null || this.queryTags.isEmpty()
-				|| tags.isEmpty())
+		int count = question.getTagIds().length;
+		if (this.queryTagIds.length == 0 || count == 0)
 			return 0;
-		for (Tag tag : tags) {
-			mustHave.remove(tag.getName());
-			// search terms prepended with "tag:" won't match any content
-			// and are thus guaranteed to only match tags (and maybe very odd
-			// usernames)
-			mustHave.remove("tag:" + tag.getName());
+		if (!mustHave.isEmpty()) {
+			for (Tag tag : question.getTags()) {
+				mustHave.remove(Analyzer.get().term(tag.getName()));
+				// search terms prepended with "tag:" won't match any content
+				// and are thus guaranteed to only match tags (and maybe very
+				// odd usernames)
+				mustHave.remove("tag:" + tag.getName());
+			}
 		}
 
 		// rate highest questions that share most of the tags and don't have
 		// hardly any additional tags
-		return Math.pow(
-				SetOperations.intersection(tags, this.queryTags).size(), 2)
-				/ this.queryTags.size() / tags.size();
+		return Math.pow(question.countCommonTags(this.queryTagIds), 2)
+				/ this.queryTagIds.length / count;
 	}
 
 	/**
@@ -124,18 +134,18 @@ public class SearchFilter implements IFilter<Question, Double> {
 	 *         terms
 	 */
 	private double rateText(Entry entry, Set<String> mustHave) {
-		String content = entry.getContentText();
-		if (entry.owner() != null)
-			content += " " + entry.owner().getName();
 		if (this.queryFulltext == null)
 			return 0;
-		Set<String> words = getWords(content);
+		Set<String> words = entry.getWords();
 		if (words.isEmpty())
 			return 0;
-		mustHave.removeAll(words);
-		return 1.0
-				* SetOperations.intersection(words, this.queryFulltext).size()
-				/ words.size();
+		int matches = 0;
+		for (String term : this.queryFulltext)
+			if (words.contains(term)) {
+				mustHave.remove(term);
+				matches++;
+			}
+		return 1.0 * matches / words.size();
 	}
 
 	/**
@@ -150,29 +160,71 @@ public class SearchFilter implements IFilter<Question, Double> {
 	 *         for terms
 	 */
 	private double rateAnswers(Question question, Set<String> mustHave) {
+		if (this.queryFulltext == null)
+			return 0;
 		double rating = 0;
-		for (Answer ans : question.answers()) {
+		List<Answer> answers = question.answers();
+		for (Answer ans : answers) {
 			rating += rateText(ans, mustHave);
 		}
-		int answerCount = question.answers().size();
+		int answerCount = answers.size();
 		return rating / (answerCount == 0 ? 1 : answerCount);
 	}
 
 	/**
-	 * Splits the content of a question, answer or the search terms up into a
-	 * set of words not containing HTML tags nor words occurring very often in
-	 * the English language (StopWords).
+	 * Splits the content of a question, answer or the search terms up into
+	 * terms (see {@link Analyzer}), i.e. words not containing HTML tags nor
+	 * stop words, and counts how often each of these terms occurs.
 	 * 
 	 * @param string
 	 *            an (HTML-)string to split up and clean
-	 * @return a set of words for easier rating through intersections
+	 * @return all the terms with their frequencies
 	 */
-	private Set<String> getWords(String string) {
-		Set<String> words = new HashSet<String>();
-		for (String word : string.split("\\W+")) {
-			words.add(word.toLowerCase());
+	public static Map<String, Integer> countWords(String string) {
+		Map<String, Integer> words = new HashMap<String, Integer>();
+		for (String word : Analyzer.get().analyze(string)) {
+			// skip stop words
+			if (word == null) {
+				continue;
+			}
+			Integer count = words.get(word);
+			words.put(word, count == null ? 1 : count + 1);
+		}
+		return words;
+	}
+
+	/**
+	 * Splits a string up into terms (see <code>countWords</code>) and notes
+	 * the positions at which each of these terms occurs. Stop words aren't
+	 * included but still count as a position, so that phrases containing stop
+	 * words can be matched exactly.
+	 * 
+	 * @param string
+	 *            an (HTML-)string to split up
+	 * @return all the terms with their positions in ascending order
+	 */
+	public static Map<String, int[]> findPositions(String string) {
+		Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+		int position = 0;
+		for (String word : Analyzer.get().analyze(string)) {
+			if (word != null) {
+				List<Integer> list = positions.get(word);
+				if (list == null) {
+					list = new ArrayList<Integer>();
+					positions.put(word, list);
+				}
+				list.add(position);
+			}
+			position++;
+		}
+		Map<String, int[]> result = new HashMap<String, int[]>();
+		for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+			int[] array = new int[entry.getValue().size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = entry.getValue().get(i);
+			}
+			result.put(entry.getKey(), array);
 		}
-		words.remove(""); // remove splitting artifact
-		return SetOperations.difference(words, StopWords.get());
+		return result;
 	}
 }
@@ -0,0 +1,46 @@
+package models;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All the questions matching a search (unsorted) together with the number of
+ * these questions carrying each of the most frequent tags (facets).
+ */
+public class SearchHits {
+
+	/** The matching questions. */
+	private final Set<Question> questions;
+
+	/** The names of the most frequent tags and their counts (descending). */
+	private final Map<String, Integer> facets;
+
+	/**
+	 * Instantiates a new set of search hits.
+	 * 
+	 * @param questions
+	 *            the matching questions
+	 * @param facets
+	 *            the names of the most frequent tags among the questions and
+	 *            their counts, the most frequent first
+	 */
+	public SearchHits(Set<Question> questions, Map<String, Integer> facets) {
+		this.questions = questions;
+		this.facets = facets;
+	}
+
+	/**
+	 * @return the matching questions
+	 */
+	public Set<Question> getQuestions() {
+		return this.questions;
+	}
+
+	/**
+	 * @return the names of the most frequent tags and how many of the
+	 *         matching questions carry them, the most frequent first
+	 */
+	public Map<String, Integer> getFacets() {
+		return this.facets;
+	}
+}
@@ -0,0 +1,1235 @@
+package models;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import models.helpers.Analyzer;
+import models.helpers.IFilter;
+import models.helpers.Mapper;
+import models.helpers.Tools;
+
+/**
+ * An inverted index mapping search terms to all the questions containing them
+ * in their content, their answers' contents, their owners' names or their tags
+ * (both as "<em>tagname</em>" and as "tag:<em>tagname</em>"). This allows a
+ * search to only look at the questions that actually contain all of its terms
+ * instead of having to rate the whole database.
+ * 
+ * Besides the posting lists, the index keeps all the statistics an
+ * {@link IScorer} needs for rating a question (term frequencies, document
+ * lengths and document frequencies), so that they don't have to be
+ * recalculated from the raw content for each search.
+ * 
+ * The index has to be updated (by calling <code>add</code> again) whenever a
+ * question, its answers or its tags change.
+ * 
+ * The index can be backed by a {@link SearchSegment} file (see
+ * <code>open</code> and <code>merge</code>), so that questions which haven't
+ * changed since the segment was written don't have to be analyzed again: the
+ * postings of such a question are served straight from the memory-mapped
+ * segment. As questions are usually still incomplete when they're added (an
+ * importer only sets their answers and tags afterwards), a question stored
+ * in the segment is only compared to it once the index is next looked up
+ * (see <code>flush</code>). Only new and changed questions are kept in
+ * memory (the delta) until they are merged into a new segment.
+ */
+public class SearchIndex {
+
+	/** All indexed terms with the questions containing them (and how often). */
+	private final Map<String, Map<Question, Integer>> postings = new HashMap<String, Map<Question, Integer>>();
+
+	/** The terms each indexed question is currently filed under. */
+	private final Map<Question, Map<String, Integer>> indexed = new HashMap<Question, Map<String, Integer>>();
+
+	/** The number of terms of each indexed question. */
+	private final Map<Question, Integer> lengths = new HashMap<Question, Integer>();
+
+	/** The sum of all the indexed questions' lengths. */
+	private long totalLength = 0;
+
+	/** All indexed terms in alphabetical order (for prefix lookups). */
+	private final TreeSet<String> dictionary = new TreeSet<String>();
+
+	/** A compact ID for each tag name an indexed question has been tagged with. */
+	private final Map<String, Integer> tagIds = new HashMap<String, Integer>();
+
+	/** The names of all tags by their IDs. */
+	private final List<String> tagNames = new ArrayList<String>();
+
+	/** The (sorted) IDs of the tags of each indexed question. */
+	private final Map<Question, int[]> questionTags = new HashMap<Question, int[]>();
+
+	/** All indexed words with the character trigrams they contain. */
+	private final Map<String, Set<String>> trigrams = new HashMap<String, Set<String>>();
+
+	/** The content hash of each question in the delta. */
+	private final Map<Question, Long> hashes = new HashMap<Question, Long>();
+
+	/** The segment backing this index (or <code>null</code>). */
+	private SearchSegment segment;
+
+	/** The questions served from the segment by their IDs. */
+	private final Map<Integer, Question> live = new HashMap<Integer, Question>();
+
+	/** The document frequencies of all terms among the questions served from the segment. */
+	private final Map<String, Integer> liveFrequencies = new HashMap<String, Integer>();
+
+	/** The questions still to be compared to the segment (see <code>flush</code>). */
+	private final Set<Question> pending = new HashSet<Question>();
+
+	/**
+	 * The maximum number of terms a prefix is expanded to, so that searching
+	 * for very short prefixes doesn't have to look at most of the index.
+	 */
+	public static final int MAX_PREFIX_EXPANSION = 50;
+
+	/**
+	 * The maximum number of similar terms for which the edit distance to a
+	 * misspelled term is calculated.
+	 */
+	public static final int MAX_FUZZY_CANDIDATES = 50;
+
+	/**
+	 * The maximum length of an indexed term. Longer words (such as pasted
+	 * binary data) can't sensibly be searched for and wouldn't fit into a
+	 * segment file, so they are left out.
+	 */
+	public static final int MAX_TERM_LENGTH = 255;
+
+	/** The maximum number of terms a misspelled term is corrected to. */
+	public static final int MAX_FUZZY_EXPANSION = 10;
+
+	/**
+	 * Adds a question to the index or updates its entries, if it has already
+	 * been indexed before. A question which hasn't been indexed yet but is
+	 * stored in the segment is only indexed at the next <code>flush</code>.
+	 * 
+	 * @param question
+	 *            the question to (re)index
+	 * @return all the terms for which the question's rating might have changed
+	 *         (i.e. all its previous and current terms if its length or its
+	 *         tags changed, otherwise only those whose frequency changed)
+	 */
+	public synchronized Set<String> add(Question question) {
+		if (this.segment != null && this.live.get(question.id()) != question
+				&& !this.indexed.containsKey(question)
+				&& this.segment.hasDocument(question.id())) {
+			this.pending.add(question);
+			return new HashSet<String>();
+		}
+		return this.index(question);
+	}
+
+	/**
+	 * Indexes all the questions added since the last lookup which still had
+	 * to be compared to the segment. This happens implicitly before any
+	 * lookup, but the changed terms are then lost.
+	 * 
+	 * @return all the terms for which a question's rating might have changed
+	 */
+	public synchronized Set<String> flush() {
+		Set<String> changed = new HashSet<String>();
+		List<Question> questions = new ArrayList<Question>(this.pending);
+		this.pending.clear();
+		for (Question question : questions) {
+			changed.addAll(this.index(question));
+		}
+		return changed;
+	}
+
+	/**
+	 * Indexes a question either from the segment (if it's stored there
+	 * unchanged) or in the delta.
+	 * 
+	 * @param question
+	 *            the question to (re)index
+	 * @return all the terms for which the question's rating might have changed
+	 */
+	private Set<String> index(Question question) {
+		Set<String> changed = new HashSet<String>();
+		long hash = getHash(question);
+		int id = question.id();
+		if (this.segment != null && this.segment.hasDocument(id)) {
+			if (this.segment.documentHash(id) == hash) {
+				// the question is still the same as when it was stored
+				if (this.live.get(id) == question)
+					return changed;
+				changed.addAll(this.remove(question));
+				changed.addAll(this.load(question));
+				return changed;
+			}
+			if (this.live.get(id) == question) {
+				changed.addAll(this.unload(question));
+			}
+		}
+
+		Map<String, Integer> terms = getTerms(question);
+		Map<String, Integer> previous = this.indexed.put(question, terms);
+		this.hashes.put(question, hash);
+		int[] tags = this.getTagIds(getTagNames(question));
+		if (!Arrays.equals(tags, this.questionTags.put(question, tags))) {
+			// the facets of all searches finding this question change
+			changed.addAll(terms.keySet());
+			if (previous != null) {
+				changed.addAll(previous.keySet());
+			}
+		}
+		if (previous != null) {
+			for (String term : previous.keySet())
+				if (!terms.containsKey(term)) {
+					this.removePosting(term, question);
+					changed.add(term);
+				}
+		}
+		int length = 0;
+		for (Map.Entry<String, Integer> term : terms.entrySet()) {
+			Map<Question, Integer> questions = this.postings.get(term.getKey());
+			if (questions == null) {
+				questions = new HashMap<Question, Integer>();
+				this.postings.put(term.getKey(), questions);
+				this.dictionary.add(term.getKey());
+				this.addTrigrams(term.getKey());
+			}
+			if (!term.getValue().equals(questions.put(question, term.getValue()))) {
+				changed.add(term.getKey());
+			}
+			length += term.getValue();
+		}
+		if (this.setLength(question, length)) {
+			changed.addAll(terms.keySet());
+		}
+		return changed;
+	}
+
+	/**
+	 * Removes a question from the index.
+	 * 
+	 * @param question
+	 *            the question to remove
+	 * @return all the terms the question has been filed under
+	 */
+	public synchronized Set<String> remove(Question question) {
+		if (this.pending.remove(question))
+			return Collections.<String> emptySet();
+		if (this.live.get(question.id()) == question)
+			return this.unload(question);
+		Map<String, Integer> terms = this.indexed.remove(question);
+		if (terms == null)
+			return Collections.<String> emptySet();
+		this.hashes.remove(question);
+		this.questionTags.remove(question);
+		for (String term : terms.keySet()) {
+			this.removePosting(term, question);
+		}
+		this.setLength(question, 0);
+		return terms.keySet();
+	}
+
+	/**
+	 * Finds all the questions that contain <em>all</em> of the given terms
+	 * (AND search).
+	 * 
+	 * @param terms
+	 *            the terms to look up (lowercase and without stop words)
+	 * @return all the questions containing all the terms (empty if no terms
+	 *         are given)
+	 */
+	public Set<Question> find(Collection<String> terms) {
+		return this.find(terms, Collections.<List<String>> emptyList());
+	}
+
+	/**
+	 * Finds all the questions that contain <em>all</em> of the given terms
+	 * and at least one term out of each of the given groups of alternatives
+	 * (such as the expansions of a prefix or the corrections of a misspelled
+	 * term).
+	 * 
+	 * @param terms
+	 *            the terms to look up (lowercase and without stop words)
+	 * @param alternatives
+	 *            the groups of terms, out of each of which a question has to
+	 *            contain at least one term
+	 * @return all the questions matching all the terms and groups (empty if
+	 *         neither terms nor groups are given)
+	 */
+	public Set<Question> find(Collection<String> terms,
+			Collection<? extends Collection<String>> alternatives) {
+		return this.find(terms, alternatives,
+				Collections.<List<String>> emptyList(), 0).getQuestions();
+	}
+
+	/**
+	 * Finds all the questions that contain <em>all</em> of the given terms,
+	 * at least one term out of each of the given groups of alternatives and
+	 * all of the given phrases (see <code>containsPhrase</code>). While
+	 * collecting the questions, the tags they carry are counted as well.
+	 * 
+	 * @param terms
+	 *            the terms to look up (lowercase and without stop words)
+	 * @param alternatives
+	 *            the groups of terms, out of each of which a question has to
+	 *            contain at least one term
+	 * @param phrases
+	 *            the phrases a question has to contain
+	 * @param facets
+	 *            the number of most frequent tags to count (0 for not
+	 *            counting any tags)
+	 * @return all the questions matching all the terms, groups and phrases
+	 *         (none if neither terms nor groups are given) together with
+	 *         their most frequent tags
+	 */
+	public synchronized SearchHits find(Collection<String> terms,
+			Collection<? extends Collection<String>> alternatives,
+			Collection<List<String>> phrases, int facets) {
+		this.flush();
+		Set<Question> result = new HashSet<Question>();
+		int[] counts = facets > 0 ? new int[this.tagNames.size()] : null;
+		List<Postings> required = new ArrayList<Postings>();
+		for (String term : terms) {
+			Postings questions = this.getPostings(term);
+			if (questions == null)
+				return new SearchHits(result, this.getFacets(counts, facets));
+			required.add(questions);
+		}
+		List<List<Postings>> groups = new ArrayList<List<Postings>>();
+		for (Collection<String> group : alternatives) {
+			List<Postings> found = new ArrayList<Postings>();
+			for (String term : group) {
+				Postings questions = this.getPostings(term);
+				if (questions != null) {
+					found.add(questions);
+				}
+			}
+			if (found.isEmpty())
+				return new SearchHits(result, this.getFacets(counts, facets));
+			groups.add(found);
+		}
+
+		// start with the shortest posting list (or, if there are only
+		// groups, with all the questions matching the first group), so that
+		// the intersection never has to look at more questions than
+		// necessary
+		Iterable<Question> start;
+		if (!required.isEmpty()) {
+			Postings shortest = required.get(0);
+			for (Postings questions : required)
+				if (questions.size() < shortest.size()) {
+					shortest = questions;
+				}
+			start = shortest;
+		} else if (!groups.isEmpty()) {
+			Set<Question> union = new HashSet<Question>();
+			for (Postings questions : groups.remove(0)) {
+				for (Question question : questions) {
+					union.add(question);
+				}
+			}
+			start = union;
+		} else
+			return new SearchHits(result, this.getFacets(counts, facets));
+
+		candidates: for (Question question : start) {
+			for (Postings questions : required)
+				if (!questions.contains(question)) {
+					continue candidates;
+				}
+			group: for (List<Postings> found : groups) {
+				for (Postings questions : found)
+					if (questions.contains(question)) {
+						continue group;
+					}
+				continue candidates;
+			}
+			for (List<String> phrase : phrases)
+				if (!containsPhrase(question, phrase)) {
+					continue candidates;
+				}
+			result.add(question);
+			if (counts != null) {
+				for (int tag : this.questionTags.get(question)) {
+					counts[tag]++;
+				}
+			}
+		}
+		return new SearchHits(result, this.getFacets(counts, facets));
+	}
+
+	/**
+	 * Counts the tags of some indexed questions.
+	 * 
+	 * @param questions
+	 *            the questions whose tags to count
+	 * @param facets
+	 *            the number of most frequent tags to return
+	 * @return the names of the most frequent tags and their counts, the most
+	 *         frequent first
+	 */
+	public synchronized Map<String, Integer> countTags(
+			Collection<Question> questions, int facets) {
+		this.flush();
+		int[] counts = new int[this.tagNames.size()];
+		for (Question question : questions) {
+			int[] tags = this.questionTags.get(question);
+			if (tags == null) {
+				continue;
+			}
+			for (int tag : tags) {
+				counts[tag]++;
+			}
+		}
+		return this.getFacets(counts, facets);
+	}
+
+	/**
+	 * Looks up all the indexed terms starting with a given prefix. As the
+	 * indexed terms are stems, the stems any word starting with the prefix
+	 * could have been reduced to (i.e. the prefix shortened by up to four
+	 * characters, but to no fewer than three) are included as well. Tags
+	 * (i.e. "tag:<em>tagname</em>" terms) are never included. At most
+	 * <code>MAX_PREFIX_EXPANSION</code> terms are returned (the ones
+	 * appearing in the most questions).
+	 * 
+	 * @param prefix
+	 *            the start of the terms to look up (lowercase)
+	 * @return the matching terms
+	 */
+	public synchronized List<String> expand(String prefix) {
+		this.flush();
+		List<String> terms = new ArrayList<String>();
+		if (prefix.equals(""))
+			return terms;
+		for (int length = Math.max(3, prefix.length() - 4); length < prefix
+				.length(); length++) {
+			String stem = prefix.substring(0, length);
+			if (this.dictionary.contains(stem)) {
+				terms.add(stem);
+			}
+		}
+		for (String term : this.dictionary.tailSet(prefix)) {
+			if (!term.startsWith(prefix)) {
+				break;
+			}
+			if (!term.startsWith("tag:")) {
+				terms.add(term);
+			}
+		}
+		if (terms.size() <= MAX_PREFIX_EXPANSION)
+			return terms;
+
+		// (the frequencies are looked up beforehand, as the filter mightn't
+		// be run by the thread holding this index's lock)
+		final Map<String, Integer> frequencies = new HashMap<String, Integer>();
+		for (String term : terms) {
+			frequencies.put(term, this.documentFrequency(term));
+		}
+		return Mapper.top(terms, new IFilter<String, Integer>() {
+			public Integer visit(String term) {
+				return -frequencies.get(term);
+			}
+		}, MAX_PREFIX_EXPANSION);
+	}
+
+	/**
+	 * Looks up the indexed terms most similar to a (probably misspelled) word,
+	 * i.e. those within a small edit distance of it (see
+	 * <code>getDistance</code>). Candidates are found through the character
+	 * trigrams they share with the word and only the
+	 * <code>MAX_FUZZY_CANDIDATES</code> sharing the most trigrams are actually
+	 * compared, so that the cost of a lookup stays bounded.
+	 * 
+	 * @param word
+	 *            the word to correct (lowercase, but not yet analyzed)
+	 * @return at most <code>MAX_FUZZY_EXPANSION</code> similar terms, the
+	 *         closest ones first
+	 */
+	public synchronized List<String> correct(final String word) {
+		this.flush();
+		final int max = getMaxDistance(word);
+		if (max == 0)
+			return new ArrayList<String>();
+
+		final Map<String, Integer> shared = new HashMap<String, Integer>();
+		for (String trigram : getTrigrams(word)) {
+			Set<String> terms = this.trigrams.get(trigram);
+			if (terms == null) {
+				continue;
+			}
+			for (String candidate : terms)
+				if (candidate.length() <= word.length() + max
+						&& candidate.length() >= word.length() - 4 - max) {
+					Integer count = shared.get(candidate);
+					shared.put(candidate, count == null ? 1 : count + 1);
+				}
+		}
+		List<String> candidates = Mapper.top(shared.keySet(),
+				new IFilter<String, Integer>() {
+					public Integer visit(String candidate) {
+						return -shared.get(candidate);
+					}
+				}, MAX_FUZZY_CANDIDATES);
+		final Map<String, Integer> distances = new HashMap<String, Integer>();
+		for (String candidate : candidates) {
+			int distance = getDistance(word, candidate);
+			if (distance <= max) {
+				distances.put(candidate, distance);
+			}
+		}
+		return Mapper.top(distances.keySet(), new IFilter<String, Integer>() {
+			public Integer visit(String candidate) {
+				return distances.get(candidate);
+			}
+		}, MAX_FUZZY_EXPANSION);
+	}
+
+	/**
+	 * Gets the maximum edit distance at which an indexed term is considered a
+	 * correction of a misspelled word: one for words of up to seven
+	 * characters, two for longer ones and none for words shorter than four
+	 * characters.
+	 * 
+	 * @param word
+	 *            the misspelled word (lowercase, but not yet analyzed)
+	 * @return the maximum distance of its corrections
+	 */
+	public static int getMaxDistance(String word) {
+		return word.length() < 4 ? 0 : word.length() < 8 ? 1 : 2;
+	}
+
+	/**
+	 * Measures how far an indexed term is from a misspelled word. As indexed
+	 * terms are stems and a misspelled word often isn't stemmed the same way
+	 * as the word it's meant to be, the term is compared both to the word's
+	 * own stem and to the word with up to four trailing characters cut off
+	 * (as the stemmer might have done, but never leaving fewer characters than
+	 * the term has).
+	 * 
+	 * @param word
+	 *            the misspelled word (lowercase, but not yet analyzed)
+	 * @param term
+	 *            the indexed term to compare it to
+	 * @return the edit distance between the word and the term (or any value
+	 *         above <code>getMaxDistance</code>, if they're further apart)
+	 */
+	public static int getDistance(String word, String term) {
+		int max = getMaxDistance(word);
+		String stem = Analyzer.get().term(word);
+		int distance = stem == null ? max + 1 : Tools.editDistance(stem,
+				term, max);
+		int shortest = Math.max(term.length(), word.length() - 4);
+		for (int length = shortest; length <= word.length(); length++) {
+			distance = Math.min(distance, Tools.editDistance(word.substring(0,
+					length), term, max));
+		}
+		return distance;
+	}
+
+	/**
+	 * Checks whether a question or one of its answers contains a phrase, i.e.
+	 * all of the phrase's terms in exactly the given order. Dropped words (such
+	 * as stop words) match any word at their position. This is done by
+	 * intersecting the positions of the phrase's words, so the question should
+	 * already be known to contain all the words (see <code>find</code>).
+	 * 
+	 * @param question
+	 *            the question to look at
+	 * @param phrase
+	 *            the phrase's terms in order (see {@link Analyzer#analyze})
+	 * @return true, if the phrase appears anywhere in the question's content
+	 *         or in one of its answers
+	 */
+	public static boolean containsPhrase(Question question, List<String> phrase) {
+		if (containsPhrase((Entry) question, phrase))
+			return true;
+		for (Answer answer : question.answers())
+			if (containsPhrase(answer, phrase))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return the number of indexed questions
+	 */
+	public synchronized int count() {
+		this.flush();
+		return this.indexed.size() + this.live.size();
+	}
+
+	/**
+	 * Counts how often a term appears in a question (including its answers,
+	 * owners and tags).
+	 * 
+	 * @param term
+	 *            the term to count
+	 * @param question
+	 *            the question to look at
+	 * @return the term's frequency in the question
+	 */
+	public synchronized int termFrequency(String term, Question question) {
+		this.flush();
+		if (this.live.get(question.id()) == question)
+			return this.segment.termFrequency(term, question.id());
+		Map<Question, Integer> questions = this.postings.get(term);
+		if (questions == null)
+			return 0;
+		Integer count = questions.get(question);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Counts in how many questions a term appears.
+	 * 
+	 * @param term
+	 *            the term to count
+	 * @return the term's document frequency
+	 */
+	public synchronized int documentFrequency(String term) {
+		this.flush();
+		Map<Question, Integer> questions = this.postings.get(term);
+		Integer live = this.liveFrequencies.get(term);
+		return (questions == null ? 0 : questions.size())
+				+ (live == null ? 0 : live);
+	}
+
+	/**
+	 * Gets the number of terms a question has been indexed with.
+	 * 
+	 * @param question
+	 *            the question to look at
+	 * @return the question's length in terms
+	 */
+	public synchronized int documentLength(Question question) {
+		this.flush();
+		Integer length = this.lengths.get(question);
+		return length == null ? 0 : length;
+	}
+
+	/**
+	 * @return the average number of terms per indexed question
+	 */
+	public synchronized double averageDocumentLength() {
+		if (this.count() == 0)
+			return 0;
+		return 1.0 * this.totalLength / this.count();
+	}
+
+	/**
+	 * Drops all the indexed questions.
+	 */
+	public synchronized void clear() {
+		this.postings.clear();
+		this.indexed.clear();
+		this.lengths.clear();
+		this.totalLength = 0;
+		this.dictionary.clear();
+		this.trigrams.clear();
+		this.tagIds.clear();
+		this.tagNames.clear();
+		this.questionTags.clear();
+		this.hashes.clear();
+		this.live.clear();
+		this.liveFrequencies.clear();
+		this.pending.clear();
+	}
+
+	/**
+	 * Starts using a segment for all the questions which haven't changed since
+	 * it was written. Any previously used segment is replaced and all the
+	 * questions indexed so far are checked against the new segment.
+	 * 
+	 * @param segment
+	 *            the segment to back this index with
+	 * @return all the terms for which a question's rating might have changed
+	 * @throws IOException
+	 *             if the segment's terms have been produced by a different
+	 *             analyzer than the current one (see {@link Analyzer#get})
+	 */
+	public synchronized Set<String> open(SearchSegment segment)
+			throws IOException {
+		if (!segment.getAnalyzer().equals(Analyzer.get().getName()))
+			throw new IOException("Search segment analyzed by \""
+					+ segment.getAnalyzer() + "\" instead of \""
+					+ Analyzer.get().getName() + "\"");
+		Set<String> changed = new HashSet<String>();
+		List<Question> questions = new ArrayList<Question>(this.live.values());
+		for (Question question : questions) {
+			changed.addAll(this.unload(question));
+		}
+		questions.addAll(this.indexed.keySet());
+		questions.addAll(this.pending);
+		this.pending.clear();
+		this.segment = segment;
+		for (Question question : questions) {
+			changed.addAll(this.add(question));
+		}
+		return changed;
+	}
+
+	/**
+	 * Writes all the indexed questions to a new segment and replaces the
+	 * current segment with it, so that the delta is emptied. The segment file
+	 * is written without blocking the index, so questions may still be added
+	 * and searched for meanwhile (those changing during the merge simply stay
+	 * in the delta).
+	 * 
+	 * @param file
+	 *            the file to write the new segment to (which may be the
+	 *            current segment's file)
+	 * @throws IOException
+	 *             if the segment can't be written
+	 */
+	public void merge(File file) throws IOException {
+		List<SearchSegment.Document> documents = new ArrayList<SearchSegment.Document>();
+		synchronized (this) {
+			this.flush();
+			for (Map.Entry<Question, Map<String, Integer>> entry : this.indexed
+					.entrySet()) {
+				Question question = entry.getKey();
+				List<String> tags = new ArrayList<String>();
+				for (int tag : this.questionTags.get(question)) {
+					tags.add(this.tagNames.get(tag));
+				}
+				documents.add(new SearchSegment.Document(question.id(),
+						this.documentLength(question), this.hashes
+								.get(question), tags, entry.getValue()));
+			}
+			for (int id : this.live.keySet()) {
+				documents.add(this.segment.document(id));
+			}
+		}
+
+		SearchSegment written = SearchSegment.write(file, Analyzer.get()
+				.getName(), documents);
+
+		synchronized (this) {
+			// only switch over those questions which haven't changed since
+			List<Question> moved = new ArrayList<Question>();
+			for (Map.Entry<Question, Long> entry : this.hashes.entrySet()) {
+				int id = entry.getKey().id();
+				if (written.hasDocument(id)
+						&& written.documentHash(id) == entry.getValue()) {
+					moved.add(entry.getKey());
+				}
+			}
+			List<Question> unloaded = new ArrayList<Question>(this.live
+					.values());
+			for (Question question : unloaded) {
+				this.unload(question);
+			}
+			for (Question question : moved) {
+				this.remove(question);
+			}
+			this.segment = written;
+			for (Question question : moved) {
+				this.load(question);
+			}
+			for (Question question : unloaded) {
+				this.add(question);
+			}
+		}
+	}
+
+	/**
+	 * Starts serving a question from the segment.
+	 * 
+	 * @param question
+	 *            the question, which must be stored unchanged in the segment
+	 *            and must not be in the delta
+	 * @return all the question's terms
+	 */
+	private Set<String> load(Question question) {
+		SearchSegment.Document document = this.segment.document(question
+				.id());
+		this.live.put(question.id(), question);
+		for (String term : document.getTerms().keySet()) {
+			Integer count = this.liveFrequencies.get(term);
+			this.liveFrequencies.put(term, count == null ? 1 : count + 1);
+			if (count == null && !this.postings.containsKey(term)) {
+				this.dictionary.add(term);
+				this.addTrigrams(term);
+			}
+		}
+		this.questionTags.put(question, this.getTagIds(document.getTags()));
+		this.setLength(question, document.getLength());
+		return document.getTerms().keySet();
+	}
+
+	/**
+	 * Stops serving a question from the segment.
+	 * 
+	 * @param question
+	 *            the question currently served from the segment
+	 * @return all the question's terms
+	 */
+	private Set<String> unload(Question question) {
+		SearchSegment.Document document = this.segment.document(question
+				.id());
+		this.live.remove(question.id());
+		for (String term : document.getTerms().keySet()) {
+			int count = this.liveFrequencies.get(term) - 1;
+			if (count > 0) {
+				this.liveFrequencies.put(term, count);
+			} else {
+				this.liveFrequencies.remove(term);
+				if (!this.postings.containsKey(term)) {
+					this.dictionary.remove(term);
+					this.removeTrigrams(term);
+				}
+			}
+		}
+		this.questionTags.remove(question);
+		this.setLength(question, 0);
+		return document.getTerms().keySet();
+	}
+
+	/**
+	 * Looks up all the questions containing a term, both in the delta and in
+	 * the segment.
+	 * 
+	 * @param term
+	 *            the term to look up
+	 * @return the questions containing the term (or <code>null</code>, if
+	 *         there are none)
+	 */
+	private Postings getPostings(String term) {
+		Map<Question, Integer> questions = this.postings.get(term);
+		int stored = this.liveFrequencies.containsKey(term) ? this.segment
+				.findPostings(term) : -1;
+		if (questions == null && stored < 0)
+			return null;
+		return new Postings(questions, stored);
+	}
+
+	/**
+	 * The questions containing a term, which are looked up directly in the
+	 * delta and in the mapped segment instead of being copied together.
+	 */
+	private class Postings implements Iterable<Question> {
+
+		/** The questions from the delta (or <code>null</code>). */
+		private final Map<Question, Integer> delta;
+
+		/** The offset of the term's postings in the segment (or -1). */
+		private final int stored;
+
+		private Postings(Map<Question, Integer> delta, int stored) {
+			this.delta = delta;
+			this.stored = stored;
+		}
+
+		/**
+		 * @return the number of questions (including those stored in the
+		 *         segment but no longer served from it)
+		 */
+		private int size() {
+			return (this.delta == null ? 0 : this.delta.size())
+					+ (this.stored < 0 ? 0 : segment.postingCount(this.stored));
+		}
+
+		/**
+		 * @param question
+		 *            an indexed question
+		 * @return true, if the question contains the term
+		 */
+		private boolean contains(Question question) {
+			if (this.delta != null && this.delta.containsKey(question))
+				return true;
+			return this.stored >= 0 && live.get(question.id()) == question
+					&& segment.postingFrequency(this.stored, question.id()) > 0;
+		}
+
+		/**
+		 * Iterates over the questions from the delta first and then over
+		 * those still served from the segment.
+		 */
+		public Iterator<Question> iterator() {
+			final Iterator<Question> delta = this.delta == null ? Collections
+					.<Question> emptySet().iterator() : this.delta.keySet()
+					.iterator();
+			final int count = this.stored < 0 ? 0 : segment
+					.postingCount(this.stored);
+			return new Iterator<Question>() {
+				private int index = 0;
+				private Question next;
+
+				public boolean hasNext() {
+					if (delta.hasNext())
+						return true;
+					while (this.next == null && this.index < count) {
+						this.next = live.get(segment.postingId(stored,
+								this.index++));
+					}
+					return this.next != null;
+				}
+
+				public Question next() {
+					if (delta.hasNext())
+						return delta.next();
+					if (!this.hasNext())
+						throw new NoSuchElementException();
+					Question question = this.next;
+					this.next = null;
+					return question;
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	/**
+	 * Removes a question from a term's posting list (and the term from the
+	 * index if no other question contains it).
+	 * 
+	 * @param term
+	 *            the term to remove the question for
+	 * @param question
+	 *            the question to remove
+	 */
+	private void removePosting(String term, Question question) {
+		Map<Question, Integer> questions = this.postings.get(term);
+		if (questions == null)
+			return;
+		questions.remove(question);
+		if (questions.isEmpty()) {
+			this.postings.remove(term);
+			if (!this.liveFrequencies.containsKey(term)) {
+				this.dictionary.remove(term);
+				this.removeTrigrams(term);
+			}
+		}
+	}
+
+	/**
+	 * Looks up the IDs of some tags, assigning new IDs to new tags.
+	 * 
+	 * @param tags
+	 *            the names of the tags to look up
+	 * @return the sorted IDs of all the tags
+	 */
+	private int[] getTagIds(List<String> tags) {
+		int[] ids = new int[tags.size()];
+		for (int i = 0; i < ids.length; i++) {
+			String name = tags.get(i);
+			Integer id = this.tagIds.get(name);
+			if (id == null) {
+				id = this.tagNames.size();
+				this.tagIds.put(name, id);
+				this.tagNames.add(name);
+			}
+			ids[i] = id;
+		}
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * Selects the most frequent tags out of a tally.
+	 * 
+	 * @param counts
+	 *            the number of questions per tag ID (or <code>null</code>)
+	 * @param facets
+	 *            the number of most frequent tags to select
+	 * @return the names of the most frequent tags and their counts, the most
+	 *         frequent first
+	 */
+	private Map<String, Integer> getFacets(final int[] counts, int facets) {
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		if (counts == null || facets <= 0)
+			return result;
+		List<Integer> tags = new ArrayList<Integer>();
+		for (int tag = 0; tag < counts.length; tag++)
+			if (counts[tag] > 0) {
+				tags.add(tag);
+			}
+		for (int tag : Mapper.top(tags, new IFilter<Integer, Integer>() {
+			public Integer visit(Integer tag) {
+				return -counts[tag];
+			}
+		}, facets)) {
+			result.put(this.tagNames.get(tag), counts[tag]);
+		}
+		return result;
+	}
+
+	/**
+	 * Files a new term under all of its trigrams (unless it's a tag term).
+	 * 
+	 * @param term
+	 *            the term to add
+	 */
+	private void addTrigrams(String term) {
+		if (term.startsWith("tag:"))
+			return;
+		for (String trigram : getTrigrams(term)) {
+			Set<String> terms = this.trigrams.get(trigram);
+			if (terms == null) {
+				terms = new HashSet<String>();
+				this.trigrams.put(trigram, terms);
+			}
+			terms.add(term);
+		}
+	}
+
+	/**
+	 * Removes a term no longer in use from all of its trigrams.
+	 * 
+	 * @param term
+	 *            the term to remove
+	 */
+	private void removeTrigrams(String term) {
+		for (String trigram : getTrigrams(term)) {
+			Set<String> terms = this.trigrams.get(trigram);
+			if (terms == null) {
+				continue;
+			}
+			terms.remove(term);
+			if (terms.isEmpty()) {
+				this.trigrams.remove(trigram);
+			}
+		}
+	}
+
+	/**
+	 * Splits a term up into all the (overlapping) sequences of three
+	 * characters it contains. The term is padded first, so that its start
+	 * and end each form trigrams of their own.
+	 * 
+	 * @param term
+	 *            the term to split up
+	 * @return the term's trigrams
+	 */
+	public static Set<String> getTrigrams(String term) {
+		String padded = "$" + term + "$";
+		Set<String> trigrams = new HashSet<String>();
+		for (int i = 0; i + 3 <= padded.length(); i++) {
+			trigrams.add(padded.substring(i, i + 3));
+		}
+		return trigrams;
+	}
+
+	/**
+	 * Updates the stored length of a question as well as the total length.
+	 * 
+	 * @param question
+	 *            the question whose length changed
+	 * @param length
+	 *            the new length (0 for removing the question)
+	 * @return true, if the length has changed
+	 */
+	private boolean setLength(Question question, int length) {
+		Integer previous = length > 0 ? this.lengths.put(question, length)
+				: this.lengths.remove(question);
+		this.totalLength += length - (previous == null ? 0 : previous);
+		return previous == null || previous != length;
+	}
+
+	/**
+	 * Collects all the terms under which a question is to be found (i.e. the
+	 * same words a {@link SearchFilter} would match) and how often each term
+	 * appears.
+	 * 
+	 * @param question
+	 *            the question to collect the terms for
+	 * @return the question's terms with their frequencies
+	 */
+	private static Map<String, Integer> getTerms(Question question) {
+		Map<String, Integer> terms = new HashMap<String, Integer>();
+		countWords(question, terms);
+		for (Answer answer : question.answers()) {
+			countWords(answer, terms);
+		}
+		for (Tag tag : question.getTags()) {
+			String term = Analyzer.get().term(tag.getName());
+			if (term != null) {
+				count(term, terms);
+			}
+			count("tag:" + tag.getName(), terms);
+		}
+		return terms;
+	}
+
+	/**
+	 * @param question
+	 *            the question whose tags to look up
+	 * @return the names of all the question's tags
+	 */
+	private static List<String> getTagNames(Question question) {
+		List<String> names = new ArrayList<String>();
+		for (Tag tag : question.getTags()) {
+			names.add(tag.getName());
+		}
+		return names;
+	}
+
+	/**
+	 * Calculates a hash of everything a question's terms are collected from
+	 * (see <code>getTerms</code>), so that a question can be recognized as
+	 * unchanged without having to analyze it again.
+	 * 
+	 * @param question
+	 *            the question to hash
+	 * @return a 64-bit hash of the question's content, its answers' contents,
+	 *         their owners' names and its tags
+	 */
+	private static long getHash(Question question) {
+		long answers = 0, tags = 0;
+		for (Answer answer : question.answers()) {
+			answers += getHash(answer);
+		}
+		for (Tag tag : question.getTags()) {
+			tags += getHash(tag.getName());
+		}
+		return (getHash((Entry) question) * 31 + answers) * 31 + tags;
+	}
+
+	/**
+	 * @param entry
+	 *            the question or answer to hash
+	 * @return a 64-bit hash of the entry's content and its owner's name
+	 */
+	private static long getHash(Entry entry) {
+		return getHash(entry.getContentText() + "\0"
+				+ (entry.owner() != null ? entry.owner().getName() : ""));
+	}
+
+	/**
+	 * Calculates the 64-bit FNV-1a hash of a string.
+	 * 
+	 * @param text
+	 *            the string to hash
+	 * @return the string's hash
+	 */
+	private static long getHash(String text) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < text.length(); i++) {
+			hash ^= text.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Checks whether a single entry's content contains a phrase.
+	 * 
+	 * @param entry
+	 *            the question or answer to look at
+	 * @param phrase
+	 *            the phrase's terms in order (see {@link Analyzer#analyze})
+	 * @return true, if the phrase appears in the entry's content
+	 */
+	private static boolean containsPhrase(Entry entry, List<String> phrase) {
+		Map<String, int[]> positions = entry.getPositions();
+		// all the positions at which the phrase could start
+		int[] starts = null;
+		for (int offset = 0; offset < phrase.size(); offset++) {
+			String word = phrase.get(offset);
+			if (word == null) {
+				continue;
+			}
+			int[] found = positions.get(word);
+			if (found == null)
+				return false;
+			starts = starts == null ? shift(found, offset) : intersect(starts,
+					found, offset);
+			if (starts.length == 0)
+				return false;
+		}
+		return starts != null;
+	}
+
+	/**
+	 * Moves all the positions of a word back by its offset in a phrase.
+	 * 
+	 * @param positions
+	 *            the ascending positions of a word
+	 * @param offset
+	 *            the word's offset in the phrase
+	 * @return the ascending positions where the phrase would have to start
+	 */
+	private static int[] shift(int[] positions, int offset) {
+		int[] starts = new int[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			starts[i] = positions[i] - offset;
+		}
+		return starts;
+	}
+
+	/**
+	 * Intersects two ascending position lists, the second one of which is
+	 * moved back by an offset first.
+	 * 
+	 * @param starts
+	 *            the ascending positions the phrase could start at
+	 * @param positions
+	 *            the ascending positions of the phrase's next word
+	 * @param offset
+	 *            the next word's offset in the phrase
+	 * @return the ascending positions at which the phrase can still start
+	 */
+	private static int[] intersect(int[] starts, int[] positions, int offset) {
+		int[] result = new int[Math.min(starts.length, positions.length)];
+		int count = 0;
+		for (int i = 0, j = 0; i < starts.length && j < positions.length;) {
+			int start = positions[j] - offset;
+			if (starts[i] < start) {
+				i++;
+			} else if (starts[i] > start) {
+				j++;
+			} else {
+				result[count++] = start;
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Adds an entry's (cached) word frequencies to a question's terms (except
+	 * for words longer than <code>MAX_TERM_LENGTH</code>).
+	 * 
+	 * @param entry
+	 *            the question or answer whose words to add
+	 * @param terms
+	 *            the term frequencies to update
+	 */
+	private static void countWords(Entry entry, Map<String, Integer> terms) {
+		for (Map.Entry<String, Integer> word : entry.getWordCounts()
+				.entrySet()) {
+			if (word.getKey().length() > MAX_TERM_LENGTH) {
+				continue;
+			}
+			Integer count = terms.get(word.getKey());
+			terms.put(word.getKey(), word.getValue()
+					+ (count == null ? 0 : count));
+		}
+	}
+
+	/**
+	 * Increments a term's frequency by one.
+	 * 
+	 * @param term
+	 *            the term to count
+	 * @param terms
+	 *            the term frequencies to update
+	 */
+	private static void count(String term, Map<String, Integer> terms) {
+		Integer count = terms.get(term);
+		terms.put(term, count == null ? 1 : count + 1);
+	}
+}
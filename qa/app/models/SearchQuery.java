@@ -0,0 +1,154 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import models.database.ITagDatabase;
+import models.helpers.Analyzer;
+
+/**
+ * A search as entered by a user, split up into its terms, tags, prefixes and
+ * phrases.
+ * 
+ * Searches which only differ in case, word order, repeated words or stop words
+ * are considered to be the same and share the same normalized key (see
+ * <code>getKey</code>).
+ */
+public class SearchQuery {
+
+	/** All the searched words (including stop words and "tag:" terms). */
+	private final Set<String> terms = new HashSet<String>();
+
+	/** All the prefixes searched for through the "<em>prefix</em>*" syntax. */
+	private final Set<String> prefixes = new HashSet<String>();
+
+	/** All the existing tags a searched word could refer to. */
+	private final Set<Tag> tags = new HashSet<Tag>();
+
+	/** All the quoted phrases, split up into terms. */
+	private final List<List<String>> phrases = new ArrayList<List<String>>();
+
+	/**
+	 * Parses a search.
+	 * 
+	 * @param term
+	 *            the search as entered by the user (see
+	 *            {@link models.database.IQuestionDatabase#searchFor(String)})
+	 * @param tagDB
+	 *            the database to look the searched tags up in
+	 */
+	public SearchQuery(String term, ITagDatabase tagDB) {
+		Matcher quoted = Pattern.compile("\"([^\"]*)\"").matcher(
+				term.toLowerCase());
+		while (quoted.find()) {
+			List<String> phrase = Analyzer.get().analyze(quoted.group(1));
+			// phrases consisting of stop words only are ignored
+			if (Collections.frequency(phrase, null) < phrase.size()) {
+				this.phrases.add(phrase);
+				this.terms.addAll(Analyzer.tokenize(quoted.group(1)));
+			}
+		}
+		for (String s : quoted.replaceAll(" ").split("\\s+")) {
+			if (s.startsWith("tag:") && s.length() > 4) {
+				// search for tag only
+				this.terms.add(s);
+				this.tags.add(tagDB.get(s.substring(4)));
+			} else if (s.matches("[\\p{L}\\p{N}_]+\\*")) {
+				// search for any word starting with this prefix
+				this.prefixes.add(s.substring(0, s.length() - 1));
+			} else {
+				// search for this term anywhere, so ignore all non-alphanumeric
+				// characters
+				this.terms.addAll(Analyzer.tokenize(s));
+				this.tags.add(tagDB.get(s));
+			}
+		}
+		// ignore unknown tags
+		this.tags.remove(null);
+	}
+
+	/**
+	 * @return all the searched words (including stop words)
+	 */
+	public Set<String> getTerms() {
+		return this.terms;
+	}
+
+	/**
+	 * @return the terms of all the searched words except for stop words (see
+	 *         {@link Analyzer}; a new set which may be modified)
+	 */
+	public Set<String> getFulltext() {
+		return Analyzer.get().terms(this.terms);
+	}
+
+	/**
+	 * @return all the searched prefixes
+	 */
+	public Set<String> getPrefixes() {
+		return this.prefixes;
+	}
+
+	/**
+	 * @return all the tags the searched words could refer to
+	 */
+	public Set<Tag> getTags() {
+		return this.tags;
+	}
+
+	/**
+	 * @return all the searched phrases as lists of terms (where dropped words
+	 *         are <code>null</code>)
+	 */
+	public List<List<String>> getPhrases() {
+		return this.phrases;
+	}
+
+	/**
+	 * Checks whether only stop words have been searched for, so that only
+	 * tags could possibly match.
+	 * 
+	 * @return true, if there's nothing to look up in a full-text index
+	 */
+	public boolean isTagSearch() {
+		return this.getFulltext().isEmpty() && this.prefixes.isEmpty();
+	}
+
+	/**
+	 * Gets a normalized representation of this search consisting of all the
+	 * (sorted) terms and prefixes which are actually searched for, followed by
+	 * the phrases.
+	 * 
+	 * @return a key which is the same for all equivalent searches
+	 */
+	public String getKey() {
+		Set<String> words = new TreeSet<String>(this.isTagSearch() ? this.terms
+				: this.getFulltext());
+		for (String prefix : this.prefixes) {
+			words.add(prefix + "*");
+		}
+		StringBuilder key = new StringBuilder();
+		for (String word : words) {
+			key.append(word).append(' ');
+		}
+		for (List<String> phrase : this.phrases) {
+			key.append('"');
+			for (String word : phrase) {
+				key.append(word == null ? "*" : word).append(' ');
+			}
+			key.append("\" ");
+		}
+		return key.toString().trim();
+	}
+
+	@Override
+	public String toString() {
+		return "SearchQuery(" + this.getKey() + ")";
+	}
+}
@@ -0,0 +1,80 @@
+package models;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single page of search results together with the (estimated) number of
+ * questions matching the search in total.
+ */
+public class SearchResult {
+
+	/** The questions on the requested page, sorted by relevance. */
+	private final List<Question> questions;
+
+	/** The total number of questions found (possibly slightly too high). */
+	private final int total;
+
+	/** The names of the most frequent tags among all questions found. */
+	private final Map<String, Integer> facets;
+
+	/**
+	 * Instantiates a new page of search results.
+	 * 
+	 * @param questions
+	 *            the questions on this page
+	 * @param total
+	 *            an estimate of how many questions have been found in total
+	 */
+	public SearchResult(List<Question> questions, int total) {
+		this(questions, total, new HashMap<String, Integer>());
+	}
+
+	/**
+	 * Instantiates a new page of search results with tag facets.
+	 * 
+	 * @param questions
+	 *            the questions on this page
+	 * @param total
+	 *            an estimate of how many questions have been found in total
+	 * @param facets
+	 *            the names of the most frequent tags among all questions
+	 *            found and how many questions carry them, the most frequent
+	 *            first
+	 */
+	public SearchResult(List<Question> questions, int total,
+			Map<String, Integer> facets) {
+		this.questions = questions;
+		this.total = total;
+		this.facets = facets;
+	}
+
+	/**
+	 * @return the questions on this page, the most relevant one first
+	 */
+	public List<Question> getQuestions() {
+		return this.questions;
+	}
+
+	/**
+	 * Gets the number of all questions matching the search. This is an upper
+	 * bound and might be slightly too high for searches matching only tags.
+	 * 
+	 * @return the total number of search hits
+	 */
+	public int getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * Gets the most frequent tags among all the questions found (not just the
+	 * ones on this page), e.g. for narrowing the search down by tag.
+	 * 
+	 * @return the tag names and how many of the questions found carry them,
+	 *         the most frequent first
+	 */
+	public Map<String, Integer> getFacets() {
+		return this.facets;
+	}
+}
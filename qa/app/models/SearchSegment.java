@@ -0,0 +1,635 @@
+package models;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An immutable part of a {@link SearchIndex} stored in a file, which is
+ * memory-mapped instead of being read, so that it can be used right away
+ * (e.g. after a restart) without having to analyze any content again.
+ * 
+ * Questions are referred to by their IDs. A segment file consists of a header,
+ * the name of the {@link models.helpers.Analyzer} the terms were produced by,
+ * the term records (each term with the IDs of all questions containing it and
+ * how often), the document records (each question's length, content hash,
+ * tags and terms), the tag records and finally a table of offsets for each of
+ * these record types (sorted by term, question ID and tag ordinal
+ * respectively), which allows binary searches directly on the mapped file.
+ */
+public class SearchSegment {
+
+	/** The first four bytes of every segment file ("QASX"). */
+	private static final int MAGIC = 0x51415358;
+
+	/** The version of the file format. */
+	private static final int VERSION = 2;
+
+	/** The size of the header in bytes. */
+	private static final int HEADER_SIZE = 40;
+
+	/**
+	 * Everything a segment stores about a single question.
+	 */
+	public static class Document {
+
+		/** The question's ID. */
+		private final int id;
+
+		/** The question's number of terms. */
+		private final int length;
+
+		/** The hash of the question's content (see SearchIndex). */
+		private final long hash;
+
+		/** The names of the question's tags. */
+		private final List<String> tags;
+
+		/** The question's terms and their frequencies. */
+		private final Map<String, Integer> terms;
+
+		/**
+		 * Describes a question to be stored in a segment.
+		 * 
+		 * @param id
+		 *            the question's ID
+		 * @param length
+		 *            the question's number of terms
+		 * @param hash
+		 *            the hash of the question's content
+		 * @param tags
+		 *            the names of the question's tags
+		 * @param terms
+		 *            the question's terms and their frequencies
+		 */
+		public Document(int id, int length, long hash, List<String> tags,
+				Map<String, Integer> terms) {
+			this.id = id;
+			this.length = length;
+			this.hash = hash;
+			this.tags = tags;
+			this.terms = terms;
+		}
+
+		/**
+		 * @return the question's ID
+		 */
+		public int getId() {
+			return this.id;
+		}
+
+		/**
+		 * @return the question's number of terms
+		 */
+		public int getLength() {
+			return this.length;
+		}
+
+		/**
+		 * @return the hash of the question's content
+		 */
+		public long getHash() {
+			return this.hash;
+		}
+
+		/**
+		 * @return the names of the question's tags
+		 */
+		public List<String> getTags() {
+			return this.tags;
+		}
+
+		/**
+		 * @return the question's terms and their frequencies
+		 */
+		public Map<String, Integer> getTerms() {
+			return this.terms;
+		}
+	}
+
+	private final MappedByteBuffer buffer;
+	private final String analyzer;
+	private final int termCount, documentCount, tagCount;
+	private final long totalLength;
+	private final int termTable, documentTable, tagTable;
+
+	/**
+	 * Maps a segment file into memory.
+	 * 
+	 * @param file
+	 *            the segment file to open
+	 * @throws IOException
+	 *             if the file can't be read, isn't a segment file or is
+	 *             truncated or otherwise corrupt
+	 */
+	public SearchSegment(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() > Integer.MAX_VALUE)
+				throw new IOException("Search segment too large: " + file);
+			this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+					0, raf.length());
+		} finally {
+			// the mapping stays valid after closing the file
+			raf.close();
+		}
+		if (this.buffer.capacity() < HEADER_SIZE
+				|| this.buffer.getInt(0) != MAGIC
+				|| this.buffer.getInt(4) != VERSION)
+			throw new IOException("Not a search segment: " + file);
+		this.termCount = this.buffer.getInt(8);
+		this.documentCount = this.buffer.getInt(12);
+		this.tagCount = this.buffer.getInt(16);
+		this.totalLength = this.buffer.getLong(20);
+		this.termTable = this.buffer.getInt(28);
+		this.documentTable = this.buffer.getInt(32);
+		this.tagTable = this.buffer.getInt(36);
+		// make sure that no lookup can ever read beyond the mapped file
+		if (!this.isValid())
+			throw new IOException("Corrupt search segment: " + file);
+		this.analyzer = this.readString(HEADER_SIZE);
+	}
+
+	/**
+	 * Writes a new segment file. The file is first written under a temporary
+	 * name and then renamed, so that a segment file is never seen half
+	 * written.
+	 * 
+	 * @param file
+	 *            the segment file to (over)write
+	 * @param analyzer
+	 *            the name of the analyzer the terms were produced by
+	 * @param documents
+	 *            all the questions to store
+	 * @return the newly written segment
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public static SearchSegment write(File file, String analyzer,
+			Collection<Document> documents) throws IOException {
+		// collect all terms and tags in order, so that they can be referred
+		// to by their ordinals
+		TreeMap<String, TreeMap<Integer, Integer>> postings = new TreeMap<String, TreeMap<Integer, Integer>>();
+		TreeSet<String> tags = new TreeSet<String>();
+		TreeMap<Integer, Document> sorted = new TreeMap<Integer, Document>();
+		long totalLength = 0;
+		for (Document document : documents) {
+			sorted.put(document.id, document);
+			totalLength += document.length;
+			tags.addAll(document.tags);
+			for (Map.Entry<String, Integer> term : document.terms.entrySet()) {
+				TreeMap<Integer, Integer> ids = postings.get(term.getKey());
+				if (ids == null) {
+					ids = new TreeMap<Integer, Integer>();
+					postings.put(term.getKey(), ids);
+				}
+				ids.put(document.id, term.getValue());
+			}
+		}
+		Map<String, Integer> termOrdinals = ordinals(postings.keySet());
+		Map<String, Integer> tagOrdinals = ordinals(tags);
+
+		File temp = new File(file.getPath() + ".tmp");
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(temp)));
+		int termTable, documentTable, tagTable;
+		try {
+			out.write(new byte[HEADER_SIZE]);
+			out.writeUTF(analyzer);
+			List<Integer> termOffsets = new ArrayList<Integer>();
+			for (Map.Entry<String, TreeMap<Integer, Integer>> term : postings
+					.entrySet()) {
+				termOffsets.add(out.size());
+				out.writeUTF(term.getKey());
+				out.writeInt(term.getValue().size());
+				for (Map.Entry<Integer, Integer> posting : term.getValue()
+						.entrySet()) {
+					out.writeInt(posting.getKey());
+					out.writeInt(posting.getValue());
+				}
+			}
+			List<Integer> documentOffsets = new ArrayList<Integer>();
+			for (Document document : sorted.values()) {
+				documentOffsets.add(out.size());
+				out.writeInt(document.id);
+				out.writeInt(document.length);
+				out.writeLong(document.hash);
+				out.writeInt(document.tags.size());
+				for (String tag : document.tags) {
+					out.writeInt(tagOrdinals.get(tag));
+				}
+				out.writeInt(document.terms.size());
+				for (Map.Entry<String, Integer> term : document.terms
+						.entrySet()) {
+					out.writeInt(termOrdinals.get(term.getKey()));
+					out.writeInt(term.getValue());
+				}
+			}
+			List<Integer> tagOffsets = new ArrayList<Integer>();
+			for (String tag : tags) {
+				tagOffsets.add(out.size());
+				out.writeUTF(tag);
+			}
+			termTable = writeTable(out, termOffsets);
+			documentTable = writeTable(out, documentOffsets);
+			tagTable = writeTable(out, tagOffsets);
+		} finally {
+			out.close();
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		try {
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+			raf.writeInt(postings.size());
+			raf.writeInt(sorted.size());
+			raf.writeInt(tags.size());
+			raf.writeLong(totalLength);
+			raf.writeInt(termTable);
+			raf.writeInt(documentTable);
+			raf.writeInt(tagTable);
+		} finally {
+			raf.close();
+		}
+		if (!temp.renameTo(file)) {
+			file.delete();
+			if (!temp.renameTo(file))
+				throw new IOException("Couldn't replace " + file);
+		}
+		return new SearchSegment(file);
+	}
+
+	/**
+	 * @return the name of the analyzer this segment's terms were produced by
+	 */
+	public String getAnalyzer() {
+		return this.analyzer;
+	}
+
+	/**
+	 * @return the number of different terms in this segment
+	 */
+	public int termCount() {
+		return this.termCount;
+	}
+
+	/**
+	 * @return the number of questions in this segment
+	 */
+	public int documentCount() {
+		return this.documentCount;
+	}
+
+	/**
+	 * @return the sum of the lengths of all questions in this segment
+	 */
+	public long totalLength() {
+		return this.totalLength;
+	}
+
+	/**
+	 * Gets a term by its ordinal.
+	 * 
+	 * @param ordinal
+	 *            the term's position in alphabetical order
+	 * @return the term
+	 */
+	public String term(int ordinal) {
+		return this.readString(this.buffer.getInt(this.termTable + 4 * ordinal));
+	}
+
+	/**
+	 * Looks a term up.
+	 * 
+	 * @param term
+	 *            the term to look up
+	 * @return the term's ordinal or <code>-(insertion point) - 1</code>, if
+	 *         the term isn't contained (as with
+	 *         {@link java.util.Arrays#binarySearch(int[], int)})
+	 */
+	public int findTerm(String term) {
+		int low = 0, high = this.termCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = this.term(middle).compareTo(term);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else
+				return middle;
+		}
+		return -low - 1;
+	}
+
+	/**
+	 * Looks up where the postings of a term are stored, so that they can be
+	 * read directly from the mapped file (see <code>postingCount</code>,
+	 * <code>postingId</code> and <code>postingFrequency</code>).
+	 * 
+	 * @param term
+	 *            the term to look up
+	 * @return the offset of the term's postings or -1, if the term isn't
+	 *         contained
+	 */
+	public int findPostings(String term) {
+		int ordinal = this.findTerm(term);
+		if (ordinal < 0)
+			return -1;
+		return this.skipString(this.buffer.getInt(this.termTable + 4
+				* ordinal));
+	}
+
+	/**
+	 * @param postings
+	 *            the offset of a term's postings (see <code>findPostings</code>)
+	 * @return the number of questions containing the term
+	 */
+	public int postingCount(int postings) {
+		return this.buffer.getInt(postings);
+	}
+
+	/**
+	 * @param postings
+	 *            the offset of a term's postings (see <code>findPostings</code>)
+	 * @param i
+	 *            the index of the posting (less than <code>postingCount</code>)
+	 * @return the ID of the <code>i</code>-th question containing the term (in
+	 *         ascending order)
+	 */
+	public int postingId(int postings, int i) {
+		return this.buffer.getInt(postings + 4 + 8 * i);
+	}
+
+	/**
+	 * Counts how often a term appears in a question.
+	 * 
+	 * @param postings
+	 *            the offset of the term's postings (see
+	 *            <code>findPostings</code>)
+	 * @param id
+	 *            the question's ID
+	 * @return the term's frequency in the question
+	 */
+	public int postingFrequency(int postings, int id) {
+		int low = 0, high = this.buffer.getInt(postings) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int found = this.buffer.getInt(postings + 4 + 8 * middle);
+			if (found < id) {
+				low = middle + 1;
+			} else if (found > id) {
+				high = middle - 1;
+			} else
+				return this.buffer.getInt(postings + 8 + 8 * middle);
+		}
+		return 0;
+	}
+
+	/**
+	 * Counts in how many of this segment's questions a term appears.
+	 * 
+	 * @param term
+	 *            the term to look up
+	 * @return the term's document frequency
+	 */
+	public int documentFrequency(String term) {
+		int ordinal = this.findTerm(term);
+		if (ordinal < 0)
+			return 0;
+		return this.buffer.getInt(this.skipString(this.buffer
+				.getInt(this.termTable + 4 * ordinal)));
+	}
+
+	/**
+	 * Checks whether a question is stored in this segment.
+	 * 
+	 * @param id
+	 *            the question's ID
+	 * @return true, if the question is stored
+	 */
+	public boolean hasDocument(int id) {
+		return this.findDocument(id) >= 0;
+	}
+
+	/**
+	 * @param id
+	 *            the question's ID
+	 * @return the question's number of terms (0 if it isn't stored)
+	 */
+	public int documentLength(int id) {
+		int offset = this.findDocument(id);
+		return offset < 0 ? 0 : this.buffer.getInt(offset + 4);
+	}
+
+	/**
+	 * @param id
+	 *            the question's ID
+	 * @return the hash of the question's content (0 if it isn't stored)
+	 */
+	public long documentHash(int id) {
+		int offset = this.findDocument(id);
+		return offset < 0 ? 0 : this.buffer.getLong(offset + 8);
+	}
+
+	/**
+	 * Reads everything stored about a question.
+	 * 
+	 * @param id
+	 *            the question's ID
+	 * @return the stored question or <code>null</code>, if it isn't stored
+	 */
+	public Document document(int id) {
+		int offset = this.findDocument(id);
+		if (offset < 0)
+			return null;
+		int length = this.buffer.getInt(offset + 4);
+		long hash = this.buffer.getLong(offset + 8);
+		offset += 16;
+		List<String> tags = new ArrayList<String>();
+		for (int i = this.buffer.getInt(offset); i > 0; i--) {
+			offset += 4;
+			tags.add(this.tag(this.buffer.getInt(offset)));
+		}
+		offset += 4;
+		Map<String, Integer> terms = new HashMap<String, Integer>();
+		for (int i = this.buffer.getInt(offset); i > 0; i--) {
+			terms.put(this.term(this.buffer.getInt(offset + 4)), this.buffer
+					.getInt(offset + 8));
+			offset += 8;
+		}
+		return new Document(id, length, hash, tags, terms);
+	}
+
+	/**
+	 * Counts how often a term appears in a question.
+	 * 
+	 * @param term
+	 *            the term to count
+	 * @param id
+	 *            the question's ID
+	 * @return the term's frequency in the question
+	 */
+	public int termFrequency(String term, int id) {
+		int postings = this.findPostings(term);
+		return postings < 0 ? 0 : this.postingFrequency(postings, id);
+	}
+
+	/**
+	 * Checks the structure of the whole file, i.e. that the tables fit the
+	 * file exactly and that all the records they point to follow each other
+	 * without gaps and only refer to existing terms and tags.
+	 * 
+	 * @return true, if all the records and tables are within the file
+	 */
+	private boolean isValid() {
+		if (this.termCount < 0 || this.documentCount < 0 || this.tagCount < 0)
+			return false;
+		if (this.termTable < HEADER_SIZE
+				|| this.documentTable != this.termTable + 4L * this.termCount
+				|| this.tagTable != this.documentTable + 4L
+						* this.documentCount
+				|| this.buffer.capacity() != this.tagTable + 4L
+						* this.tagCount)
+			return false;
+
+		// all records lie between the analyzer's name and the term table
+		int end = this.termTable;
+		if (HEADER_SIZE + 2 > end)
+			return false;
+		long offset = this.skipString(HEADER_SIZE);
+		for (int i = 0; i < this.termCount; i++) {
+			if (this.buffer.getInt(this.termTable + 4 * i) != offset
+					|| offset + 2 > end)
+				return false;
+			offset = this.skipString((int) offset);
+			if (offset + 4 > end)
+				return false;
+			int postings = this.buffer.getInt((int) offset);
+			offset += 4 + 8L * postings;
+			if (postings < 0 || offset > end)
+				return false;
+		}
+		for (int i = 0; i < this.documentCount; i++) {
+			if (this.buffer.getInt(this.documentTable + 4 * i) != offset
+					|| offset + 20 > end)
+				return false;
+			int tags = this.buffer.getInt((int) offset + 16);
+			offset += 20;
+			if (tags < 0 || offset + 4L * tags + 4 > end)
+				return false;
+			for (int j = 0; j < tags; j++, offset += 4) {
+				int tag = this.buffer.getInt((int) offset);
+				if (tag < 0 || tag >= this.tagCount)
+					return false;
+			}
+			int terms = this.buffer.getInt((int) offset);
+			offset += 4;
+			if (terms < 0 || offset + 8L * terms > end)
+				return false;
+			for (int j = 0; j < terms; j++, offset += 8) {
+				int term = this.buffer.getInt((int) offset);
+				if (term < 0 || term >= this.termCount)
+					return false;
+			}
+		}
+		for (int i = 0; i < this.tagCount; i++) {
+			if (this.buffer.getInt(this.tagTable + 4 * i) != offset
+					|| offset + 2 > end)
+				return false;
+			offset = this.skipString((int) offset);
+		}
+		return offset == end;
+	}
+
+	/**
+	 * Looks a question up.
+	 * 
+	 * @return the offset of the question's record or -1
+	 */
+	private int findDocument(int id) {
+		int low = 0, high = this.documentCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int offset = this.buffer.getInt(this.documentTable + 4 * middle);
+			int found = this.buffer.getInt(offset);
+			if (found < id) {
+				low = middle + 1;
+			} else if (found > id) {
+				high = middle - 1;
+			} else
+				return offset;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the tag name with the given ordinal
+	 */
+	private String tag(int ordinal) {
+		return this.readString(this.buffer.getInt(this.tagTable + 4 * ordinal));
+	}
+
+	/**
+	 * Reads a string stored through <code>DataOutput.writeUTF</code>.
+	 */
+	private String readString(int offset) {
+		byte[] bytes = new byte[this.buffer.getShort(offset) & 0xffff];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.buffer.get(offset + 2 + i);
+		}
+		try {
+			// modified UTF-8 only differs for \0 and supplementary characters
+			return new String(bytes, "UTF-8");
+		} catch (java.io.UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the offset right after the string stored at the given offset
+	 */
+	private int skipString(int offset) {
+		return offset + 2 + (this.buffer.getShort(offset) & 0xffff);
+	}
+
+	/**
+	 * Writes a table of offsets.
+	 * 
+	 * @return the table's own offset
+	 */
+	private static int writeTable(DataOutputStream out, List<Integer> offsets)
+			throws IOException {
+		int table = out.size();
+		for (int offset : offsets) {
+			out.writeInt(offset);
+		}
+		return table;
+	}
+
+	/**
+	 * Numbers a sorted set of strings.
+	 */
+	private static Map<String, Integer> ordinals(Collection<String> sorted) {
+		Map<String, Integer> ordinals = new HashMap<String, Integer>();
+		for (String string : sorted) {
+			ordinals.put(string, ordinals.size());
+		}
+		return ordinals;
+	}
+}
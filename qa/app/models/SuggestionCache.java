@@ -0,0 +1,218 @@
+package models;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A cache for the questions suggested to users (see
+ * {@link models.database.IQuestionDatabase#suggestQuestions(User)}), so that
+ * the suggestions don't have to be looked for again on every single page view.
+ * 
+ * Each user's suggestions are remembered together with the questions and tags
+ * they have been derived from, so that they can be dropped exactly when a
+ * question which might change them is added, answered, voted on, tagged or
+ * removed (see <code>invalidate</code>). Only the suggestions of the most
+ * recently served <code>capacity</code> users are kept.
+ */
+public class SuggestionCache {
+
+	/** The cached suggestions together with what they depend on. */
+	private static class Feed {
+
+		/** The suggested questions, best first. */
+		private final List<Question> questions;
+
+		/** The questions the suggestions have been derived from. */
+		private final Set<Question> sources;
+
+		/** The tags of the questions the suggestions have been derived from. */
+		private final Set<Tag> tags;
+
+		private Feed(List<Question> questions, Set<Question> sources,
+				Set<Tag> tags) {
+			this.questions = questions;
+			this.sources = sources;
+			this.tags = tags;
+		}
+	}
+
+	/** The cached suggestions, least recently used first. */
+	private final LinkedHashMap<User, Feed> feeds;
+
+	/** For each question all the users whose suggestions depend on it. */
+	private final Map<Question, Set<User>> byQuestion = new HashMap<Question, Set<User>>();
+
+	/** For each tag all the users whose suggestions depend on it. */
+	private final Map<Tag, Set<User>> byTag = new HashMap<Tag, Set<User>>();
+
+	/** The maximum number of users to keep the suggestions for. */
+	private final int capacity;
+
+	/**
+	 * The number of times the cache has been invalidated, so that suggestions
+	 * looked for in the meantime aren't cached (see <code>put</code>).
+	 */
+	private long generation = 0;
+
+	/**
+	 * Creates a new empty cache.
+	 * 
+	 * @param capacity
+	 *            the maximum number of users to keep the suggestions for
+	 */
+	public SuggestionCache(int capacity) {
+		this.feeds = new LinkedHashMap<User, Feed>(16, 0.75f, true);
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Looks up the cached suggestions for a user.
+	 * 
+	 * @param user
+	 *            the user to get the suggestions for
+	 * @return the cached suggestions or <code>null</code>, if they've got to
+	 *         be looked for (again)
+	 */
+	public synchronized List<Question> get(User user) {
+		Feed feed = this.feeds.get(user);
+		return feed == null ? null : feed.questions;
+	}
+
+	/**
+	 * @return the current generation of the cache, which changes whenever
+	 *         cached suggestions are invalidated
+	 */
+	public synchronized long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * Caches the suggestions for a user (replacing any previous ones), unless
+	 * the cache has been invalidated while they were looked for, as they might
+	 * then already be outdated.
+	 * 
+	 * @param user
+	 *            the user the suggestions are for
+	 * @param suggestions
+	 *            the suggested questions, best first
+	 * @param answered
+	 *            all the questions the suggestions have been derived from
+	 *            (i.e. the questions the user has answered)
+	 * @param generation
+	 *            the generation of the cache before the suggestions were
+	 *            looked for (see <code>getGeneration</code>)
+	 */
+	public synchronized void put(User user, List<Question> suggestions,
+			Collection<Question> answered, long generation) {
+		if (generation != this.generation)
+			return;
+		this.remove(user);
+		Set<Question> sources = new HashSet<Question>(answered);
+		sources.addAll(suggestions);
+		Set<Tag> tags = new HashSet<Tag>();
+		for (Question question : answered) {
+			tags.addAll(question.getTags());
+		}
+		this.feeds.put(user, new Feed(suggestions, sources, tags));
+		for (Question question : sources) {
+			add(this.byQuestion, question, user);
+		}
+		for (Tag tag : tags) {
+			add(this.byTag, tag, user);
+		}
+		if (this.feeds.size() > this.capacity) {
+			this.remove(this.feeds.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Drops all the cached suggestions which might change because a question
+	 * (or its answers or tags) has been added, changed or removed: the
+	 * suggestions of all the users who have answered it or have got it
+	 * suggested and of all the users who have answered questions with one of
+	 * its tags.
+	 * 
+	 * @param question
+	 *            the question which has been added, changed or removed
+	 */
+	public synchronized void invalidate(Question question) {
+		this.generation++;
+		if (this.feeds.isEmpty())
+			return;
+		Set<User> outdated = new HashSet<User>();
+		Set<User> users = this.byQuestion.get(question);
+		if (users != null) {
+			outdated.addAll(users);
+		}
+		for (Tag tag : question.getTags()) {
+			users = this.byTag.get(tag);
+			if (users != null) {
+				outdated.addAll(users);
+			}
+		}
+		// whoever has answered the question might get new suggestions
+		for (Answer answer : question.answers()) {
+			outdated.add(answer.owner());
+		}
+		for (User user : outdated) {
+			this.remove(user);
+		}
+	}
+
+	/**
+	 * @return the number of users whose suggestions are cached
+	 */
+	public synchronized int count() {
+		return this.feeds.size();
+	}
+
+	/**
+	 * Drops all the cached suggestions.
+	 */
+	public synchronized void clear() {
+		this.generation++;
+		this.feeds.clear();
+		this.byQuestion.clear();
+		this.byTag.clear();
+	}
+
+	/**
+	 * Drops the cached suggestions of a single user.
+	 * 
+	 * @param user
+	 *            the user whose suggestions to forget
+	 */
+	public synchronized void remove(User user) {
+		Feed feed = this.feeds.remove(user);
+		if (feed == null)
+			return;
+		for (Question question : feed.sources) {
+			remove(this.byQuestion, question, user);
+		}
+		for (Tag tag : feed.tags) {
+			remove(this.byTag, tag, user);
+		}
+	}
+
+	private static <K> void add(Map<K, Set<User>> index, K key, User user) {
+		Set<User> users = index.get(key);
+		if (users == null) {
+			users = new HashSet<User>();
+			index.put(key, users);
+		}
+		users.add(user);
+	}
+
+	private static <K> void remove(Map<K, Set<User>> index, K key, User user) {
+		Set<User> users = index.get(key);
+		users.remove(user);
+		if (users.isEmpty()) {
+			index.remove(key);
+		}
+	}
+}
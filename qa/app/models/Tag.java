@@ -17,6 +17,12 @@ public class Tag implements Comparable<Tag> {
 	/** The name of this tag (all lowercase and without whitespace). */
 	private final String name;
 
+	/**
+	 * A small number identifying this tag within its tag database (or -1 for
+	 * standalone tags).
+	 */
+	private final int id;
+
 	/** The questions associated with this tag. */
 	private final HashSet<Question> questions = new HashSet<Question>();
 
@@ -38,9 +44,29 @@ public class Tag implements Comparable<Tag> {
 	 *            this tag is no longer needed
 	 */
 	public Tag(String name, ICleanup<Tag> cleaner) {
+		this(name, -1, cleaner);
+	}
+
+	/**
+	 * Instantiates a new Tag belonging to a tag database. Tag names must be all
+	 * lowercase, may not contain whitespace and must be at most 32 characters
+	 * long.
+	 * 
+	 * @param name
+	 *            the name of this tag (must be all lowercase and not contain
+	 *            whitespace)
+	 * @param id
+	 *            a small number identifying this tag among all the tags of
+	 *            the database currently in use
+	 * @param cleaner
+	 *            an optional clean-up object that wants to be notified when
+	 *            this tag is no longer needed
+	 */
+	public Tag(String name, int id, ICleanup<Tag> cleaner) {
 		if (name == null || !name.matches(this.tagRegex))
 			throw new IllegalArgumentException();
 		this.name = name;
+		this.id = id;
 		this.cleaner = cleaner;
 	}
 
@@ -51,6 +77,14 @@ public class Tag implements Comparable<Tag> {
 		return this.name;
 	}
 
+	/**
+	 * @return the number identifying this tag within its tag database (or -1
+	 *         for standalone tags)
+	 */
+	public int id() {
+		return this.id;
+	}
+
 	/**
 	 * @return a list of all the questions associated with this tag.
 	 */
@@ -58,6 +92,13 @@ public class Tag implements Comparable<Tag> {
 		return (Set<Question>) this.questions.clone();
 	}
 
+	/**
+	 * @return the number of questions associated with this tag.
+	 */
+	public int countQuestions() {
+		return this.questions.size();
+	}
+
 	/**
 	 * @param question
 	 *            the question to associate with this Tag.
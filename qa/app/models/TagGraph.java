@@ -0,0 +1,202 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import models.helpers.Mapper;
+
+/**
+ * Keeps for each tag the questions labeled with it and for each pair of tags
+ * the number of questions labeled with both of them, so that similar
+ * questions (and related tags) can be found by only looking at the questions
+ * sharing a tag instead of having to rate the whole database.
+ * 
+ * The graph has to be updated (by calling <code>update</code>) whenever a
+ * question's tags change.
+ */
+public class TagGraph {
+
+	/** For each tag all the questions labeled with it. */
+	private final Map<Tag, Set<Question>> postings = new HashMap<Tag, Set<Question>>();
+
+	/** For each question the tags it has been added with. */
+	private final Map<Question, Set<Tag>> questionTags = new HashMap<Question, Set<Tag>>();
+
+	/** For each tag the number of questions shared with each other tag. */
+	private final Map<Tag, Map<Tag, Integer>> cooccurrences = new HashMap<Tag, Map<Tag, Integer>>();
+
+	/**
+	 * Adds a question to the graph or updates its tags.
+	 * 
+	 * @param question
+	 *            the question whose tags to (re)add
+	 * @return the tags the question hasn't had before (by name)
+	 */
+	public synchronized Set<Tag> update(Question question) {
+		Set<Tag> tags = new HashSet<Tag>(question.getTags());
+		Set<Tag> previous = this.questionTags.get(question);
+		if (previous == null ? tags.isEmpty() : tags.equals(previous))
+			return Collections.<Tag> emptySet();
+		Set<Tag> added = new HashSet<Tag>(tags);
+		if (previous != null) {
+			// tags may have been replaced by new ones with the same name
+			Set<String> names = new HashSet<String>();
+			for (Tag tag : previous) {
+				names.add(tag.getName());
+			}
+			for (Tag tag : tags)
+				if (names.contains(tag.getName())) {
+					added.remove(tag);
+				}
+		}
+		this.remove(question);
+		if (tags.isEmpty())
+			return added;
+		this.questionTags.put(question, tags);
+		for (Tag tag : tags) {
+			Set<Question> questions = this.postings.get(tag);
+			if (questions == null) {
+				questions = new HashSet<Question>();
+				this.postings.put(tag, questions);
+			}
+			questions.add(question);
+			this.count(tag, tags, 1);
+		}
+		return added;
+	}
+
+	/**
+	 * Removes a question from the graph.
+	 * 
+	 * @param question
+	 *            the question to remove
+	 */
+	public synchronized void remove(Question question) {
+		Set<Tag> tags = this.questionTags.remove(question);
+		if (tags == null)
+			return;
+		for (Tag tag : tags) {
+			Set<Question> questions = this.postings.get(tag);
+			questions.remove(question);
+			if (questions.isEmpty()) {
+				this.postings.remove(tag);
+			}
+			this.count(tag, tags, -1);
+		}
+	}
+
+	/**
+	 * Drops all the questions.
+	 */
+	public synchronized void clear() {
+		this.postings.clear();
+		this.questionTags.clear();
+		this.cooccurrences.clear();
+	}
+
+	/**
+	 * Finds all the questions sharing at least one tag with a given question.
+	 * The more tags two questions share and the fewer tags they don't share,
+	 * the more similar they are (the same rating as the one given by a
+	 * {@link SearchFilter} without search terms).
+	 * 
+	 * @param question
+	 *            the question to find similar ones for
+	 * @return the similar questions (without the given question itself), the
+	 *         most similar first
+	 */
+	public synchronized List<Question> findSimilar(Question question) {
+		List<Tag> tags = question.getTags();
+		if (tags.isEmpty())
+			return new ArrayList<Question>();
+		Map<Question, Integer> overlaps = new HashMap<Question, Integer>();
+		for (Tag tag : tags) {
+			Set<Question> questions = this.postings.get(tag);
+			if (questions == null)
+				continue;
+			for (Question other : questions) {
+				Integer overlap = overlaps.get(other);
+				overlaps.put(other, overlap == null ? 1 : overlap + 1);
+			}
+		}
+		overlaps.remove(question);
+
+		Map<Question, Double> ratings = new HashMap<Question, Double>();
+		for (Map.Entry<Question, Integer> entry : overlaps.entrySet()) {
+			int overlap = entry.getValue();
+			// best matching questions should appear first in an ascending
+			// sort
+			ratings.put(entry.getKey(), -Math.pow(overlap, 2) / tags.size()
+					/ entry.getKey().getTagIds().length);
+		}
+		return Mapper.sortByValue(ratings);
+	}
+
+	/**
+	 * Finds the tags which most often label the same questions as a given tag.
+	 * 
+	 * @param tag
+	 *            the tag to find related ones for
+	 * @param k
+	 *            the maximum number of tags to return
+	 * @return the (at most) <code>k</code> tags sharing the most questions
+	 *         with the given tag, the one sharing the most first
+	 */
+	public synchronized List<Tag> getRelatedTags(Tag tag, int k) {
+		Map<Tag, Integer> related = this.cooccurrences.get(tag);
+		if (related == null)
+			return new ArrayList<Tag>();
+		Map<Tag, Integer> counts = new HashMap<Tag, Integer>();
+		for (Map.Entry<Tag, Integer> entry : related.entrySet()) {
+			counts.put(entry.getKey(), -entry.getValue());
+		}
+		List<Tag> tags = Mapper.sortByValue(counts);
+		if (tags.size() > k)
+			return new ArrayList<Tag>(tags.subList(0, k));
+		return tags;
+	}
+
+	/**
+	 * @param a
+	 *            a tag
+	 * @param b
+	 *            another tag
+	 * @return the number of questions labeled with both tags
+	 */
+	public synchronized int countCooccurrences(Tag a, Tag b) {
+		Map<Tag, Integer> related = this.cooccurrences.get(a);
+		Integer count = related == null ? null : related.get(b);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Adds to (or subtracts from) the number of questions a tag shares with
+	 * all the other tags of a question.
+	 */
+	private void count(Tag tag, Set<Tag> tags, int delta) {
+		Map<Tag, Integer> related = this.cooccurrences.get(tag);
+		if (related == null) {
+			related = new HashMap<Tag, Integer>();
+			this.cooccurrences.put(tag, related);
+		}
+		for (Tag other : tags) {
+			if (other == tag)
+				continue;
+			Integer count = related.get(other);
+			int sum = (count == null ? 0 : count) + delta;
+			if (sum == 0) {
+				related.remove(other);
+			} else {
+				related.put(other, sum);
+			}
+		}
+		if (related.isEmpty()) {
+			this.cooccurrences.remove(tag);
+		}
+	}
+}
@@ -7,14 +7,20 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
+import models.helpers.Histogram;
 import models.helpers.ICleanup;
 import models.helpers.IFilter;
 import models.helpers.IObservable;
 import models.helpers.IObserver;
 import models.helpers.Mapper;
+import models.helpers.SlidingWindowCounter;
 import models.helpers.Tools;
 
 /**
@@ -36,6 +42,12 @@ public class User implements IObserver, ICleanup<Item> {
 	private String password;
 	private String email;
 	private final HashSet<Item> items;
+	/** The same items grouped by their class, each ordered by creation time. */
+	private final HashMap<Class<? extends Item>, TreeSet<Item>> itemsByType;
+	/** The number of items created per minute during the last hour. */
+	private final SlidingWindowCounter itemsPerHour;
+	/** The number of up-votes given to each other user's entries. */
+	private final Histogram<User> upVotes;
 	private String fullname;
 	protected Date dateOfBirth;
 	private String website;
@@ -84,6 +96,9 @@ public class User implements IObserver, ICleanup<Item> {
 		this.confirmKey = Tools.randomStringGenerator(35);
 		this.registrationTimestamp = SysInfo.now();
 		this.items = new HashSet<Item>();
+		this.itemsByType = new HashMap<Class<? extends Item>, TreeSet<Item>>();
+		this.itemsPerHour = new SlidingWindowCounter();
+		this.upVotes = new Histogram<User>();
 		this.mainMailbox = new Mailbox(name);
 		this.isSpammer = false;
 		this.cleaner = cleaner;
@@ -132,7 +147,7 @@ public class User implements IObserver, ICleanup<Item> {
 	 *            the {@link Item} to register
 	 */
 	public void registerItem(Item item) {
-		this.items.add(item);
+		this.index(item);
 		this.updateCheaterStatus();
 		if (item instanceof Entry) {
 			this.setLastPostTime(SysInfo.now());
@@ -149,6 +164,9 @@ public class User implements IObserver, ICleanup<Item> {
 			item.delete();
 		}
 		this.items.clear();
+		this.itemsByType.clear();
+		this.itemsPerHour.clear();
+		this.upVotes.clear();
 		this.mainMailbox.delete();
 		if (this.cleaner != null) {
 			this.cleaner.cleanUp(this);
@@ -161,7 +179,57 @@ public class User implements IObserver, ICleanup<Item> {
 	 * @see models.helpers.ICleanup#cleanUp(java.lang.Object)
 	 */
 	public void cleanUp(Item item) {
-		this.items.remove(item);
+		this.unindex(item);
+	}
+
+	/**
+	 * Orders items by their creation time (and items created at the same time
+	 * by their IDs).
+	 */
+	private static final Comparator<Item> byTimestamp = new Comparator<Item>() {
+		public int compare(Item i1, Item i2) {
+			int cmp = i1.timestamp().compareTo(i2.timestamp());
+			if (cmp != 0)
+				return cmp;
+			return i1.id() < i2.id() ? -1 : i1.id() == i2.id() ? 0 : 1;
+		}
+	};
+
+	/**
+	 * Adds an {@link Item} to this user's items (without any of the side
+	 * effects of <code>registerItem</code>).
+	 * 
+	 * @param item
+	 *            the {@link Item} to add
+	 */
+	void index(Item item) {
+		if (!this.items.add(item))
+			return;
+		TreeSet<Item> typed = this.itemsByType.get(item.getClass());
+		if (typed == null) {
+			typed = new TreeSet<Item>(byTimestamp);
+			this.itemsByType.put(item.getClass(), typed);
+		}
+		typed.add(item);
+		this.itemsPerHour.add(item.timestamp(), 1);
+	}
+
+	/**
+	 * Removes an {@link Item} from this user's items. Has to be called before
+	 * the item's timestamp changes, so that it can still be found.
+	 * 
+	 * @param item
+	 *            the {@link Item} to remove
+	 */
+	void unindex(Item item) {
+		if (!this.items.remove(item))
+			return;
+		TreeSet<Item> typed = this.itemsByType.get(item.getClass());
+		typed.remove(item);
+		if (typed.isEmpty()) {
+			this.itemsByType.remove(item.getClass());
+		}
+		this.itemsPerHour.add(item.timestamp(), -1);
 	}
 
 	/**
@@ -178,20 +246,14 @@ public class User implements IObserver, ICleanup<Item> {
 
 	/**
 	 * The amount of Comments, Answers and Questions the <code>User</code> has
-	 * posted in the last 60 Minutes.
+	 * posted in the last 60 Minutes (counted by the minute, see
+	 * {@link SlidingWindowCounter}).
 	 * 
 	 * @return The amount of Comments, Answers and Questions for this
 	 *         <code>User</code> in this Hour.
 	 */
 	public int howManyItemsPerHour() {
-		long now = SysInfo.now().getTime();
-		int i = 0;
-		for (Item item : this.items) {
-			if (now - item.timestamp().getTime() <= 60 * 60 * 1000) {
-				i++;
-			}
-		}
-		return i;
+		return this.itemsPerHour.count(SysInfo.now());
 	}
 
 	/**
@@ -204,25 +266,25 @@ public class User implements IObserver, ICleanup<Item> {
 		if (SysInfo.isInTestMode())
 			return false;
 
-		int voteCount = 0;
-		HashMap<User, Integer> votesForUser = new HashMap<User, Integer>();
-		for (Item item : this.items) {
-			if (item instanceof Vote && ((Vote) item).up()) {
-				Vote vote = (Vote) item;
-				Integer count = votesForUser.get(vote.getEntry().owner());
-				if (count == null) {
-					count = 0;
-				}
-				votesForUser.put(vote.getEntry().owner(), count + 1);
-				voteCount++;
-			}
-		}
-
-		if (votesForUser.isEmpty())
-			return false;
+		int maxCount = this.upVotes.max();
+		return maxCount > 3 && maxCount > 0.5 * this.upVotes.total();
+	}
 
-		Integer maxCount = Collections.max(votesForUser.values());
-		return maxCount > 3 && maxCount > 0.5 * voteCount;
+	/**
+	 * Counts (or uncounts) an up-vote of this <code>User</code> for the
+	 * entry of another one (for cheater detection).
+	 * 
+	 * @param target
+	 *            the owner of the entry voted for (or <code>null</code>)
+	 * @param add
+	 *            whether the up-vote has been added or removed
+	 */
+	void countUpVote(User target, boolean add) {
+		if (add) {
+			this.upVotes.increment(target);
+		} else {
+			this.upVotes.decrement(target);
+		}
 	}
 
 	/**
@@ -239,7 +301,7 @@ public class User implements IObserver, ICleanup<Item> {
 			if (item instanceof Question || keepOnlyQuestions
 					&& item instanceof Entry) {
 				((Entry) item).anonymize();
-				this.items.remove(item);
+				this.unindex(item);
 			}
 		}
 	}
@@ -558,6 +620,7 @@ public class User implements IObserver, ICleanup<Item> {
 	 */
 	public List<Question> getSortedAnsweredQuestions() {
 		List<Question> sortedAnsweredQuestions = new ArrayList<Question>();
+		Set<Question> seen = new HashSet<Question>();
 		/*
 		 * Get all questions the user has answered. Ignore duplicates. Don't add
 		 * those questions belonging to negative rated answers.
@@ -565,7 +628,7 @@ public class User implements IObserver, ICleanup<Item> {
 		// getAnswers already sorts all answers - best first
 		for (Answer a : this.getAnswers()) {
 			Question q = a.getQuestion();
-			if (!sortedAnsweredQuestions.contains(q) && a.rating() >= 0) {
+			if (a.rating() >= 0 && seen.add(q)) {
 				sortedAnsweredQuestions.add(q);
 			}
 		}
@@ -602,15 +665,21 @@ public class User implements IObserver, ICleanup<Item> {
 	 * @return List<Item> The last three <code>Item</code>s of this
 	 *         <code>User</code>
 	 */
-	protected List getRecentItemsByType(Class type) {
-		List recentItems = this.getItemsByType(type);
-		Collections.sort(recentItems, new Comparator<Item>() {
-			public int compare(Item i1, Item i2) {
-				return i2.timestamp().compareTo(i1.timestamp());
+	protected <T extends Item> List<T> getRecentItemsByType(Class<T> type) {
+		List<T> recentItems = new ArrayList<T>();
+		List<TreeSet<Item>> typedItems = this.getTypedItems(type);
+		for (TreeSet<Item> typed : typedItems) {
+			Iterator<Item> it = typed.descendingIterator();
+			for (int i = 0; i < 3 && it.hasNext(); i++) {
+				recentItems.add(type.cast(it.next()));
 			}
-		});
-		if (recentItems.size() > 3)
-			return recentItems.subList(0, 3);
+		}
+		// only items from several subclasses have to be merged
+		if (typedItems.size() > 1) {
+			Collections.sort(recentItems, Collections.reverseOrder(byTimestamp));
+			if (recentItems.size() > 3)
+				return new ArrayList<T>(recentItems.subList(0, 3));
+		}
 		return recentItems;
 	}
 
@@ -723,16 +792,37 @@ public class User implements IObserver, ICleanup<Item> {
 	 *            the type
 	 * @return ArrayList All type-items of this user
 	 */
-	protected List getItemsByType(Class type) {
-		List items = new ArrayList();
-		for (Item item : this.items)
-			if (type.isInstance(item)) {
-				items.add(item);
+	protected <T extends Item & Comparable<? super T>> List<T> getItemsByType(
+			Class<T> type) {
+		List<T> items = new ArrayList<T>();
+		for (TreeSet<Item> typed : this.getTypedItems(type)) {
+			for (Item item : typed) {
+				items.add(type.cast(item));
 			}
+		}
+		// entries are sorted by their ratings which may change at any time
 		Collections.sort(items);
 		return items;
 	}
 
+	/**
+	 * Get the ordered collections of all of this user's items being an
+	 * instance of a specific type (one per subclass of that type).
+	 * 
+	 * @param type
+	 *            the type
+	 * @return the collections of matching items, each ordered by creation time
+	 */
+	private List<TreeSet<Item>> getTypedItems(Class<? extends Item> type) {
+		List<TreeSet<Item>> typed = new ArrayList<TreeSet<Item>>();
+		for (Map.Entry<Class<? extends Item>, TreeSet<Item>> entry : this.itemsByType
+				.entrySet())
+			if (type.isAssignableFrom(entry.getKey())) {
+				typed.add(entry.getValue());
+			}
+		return typed;
+	}
+
 	public void setDateOfBirth(Date time) {
 		this.dateOfBirth = time;
 	}
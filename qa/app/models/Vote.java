@@ -27,6 +27,7 @@ public class Vote extends Item {
 		super(owner);
 		this.up = up;
 		this.entry = entry;
+		this.count(true);
 	}
 
 	/**
@@ -35,6 +36,7 @@ public class Vote extends Item {
 	 */
 	@Override
 	public void delete() {
+		this.count(false);
 		this.entry.cleanUp(this);
 		unregisterUser();
 	}
@@ -48,6 +50,19 @@ public class Vote extends Item {
 		return this.up;
 	}
 
+	/**
+	 * Counts (or uncounts) this <code>Vote</code> with its owner as an
+	 * up-vote for the owner of the voted {@link Entry}.
+	 * 
+	 * @param add
+	 *            whether to count or to uncount this vote
+	 */
+	void count(boolean add) {
+		if (this.up && this.owner() != null) {
+			this.owner().countUpVote(this.entry.owner(), add);
+		}
+	}
+
 	/**
 	 * Returns the entry this vote is for.
 	 * 
@@ -1,29 +1,56 @@
 package models.database.HotDatabase;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import models.Answer;
+import models.BM25Scorer;
+import models.Entry;
+import models.ExpertiseIndex;
+import models.IScorer;
 import models.Question;
 import models.SearchFilter;
+import models.SearchCache;
+import models.SearchCache.CachedSearch;
+import models.SearchHits;
+import models.SearchIndex;
+import models.SearchQuery;
+import models.SearchResult;
+import models.SearchSegment;
+import models.SuggestionCache;
 import models.Tag;
+import models.TagGraph;
 import models.User;
+import models.Vote;
 import models.database.IQuestionDatabase;
 import models.database.ITagDatabase;
+import models.helpers.IChangeListener;
+import models.helpers.Analyzer;
 import models.helpers.ICleanup;
+import models.helpers.IFilter;
 import models.helpers.Mapper;
 
 public class HotQuestionDatabase implements IQuestionDatabase,
-		ICleanup<Question> {
+		ICleanup<Question>, IChangeListener<Question> {
 
 	private final HashMap<Integer, Question> questions = new HashMap<Integer, Question>();
 	private final ITagDatabase tagDB;
+	private final SearchIndex index = new SearchIndex();
+	private IScorer scorer = new BM25Scorer();
+	private final SearchCache cache = new SearchCache(1000);
+	private final ExpertiseIndex expertise = new ExpertiseIndex();
+	private final SuggestionCache suggestions = new SuggestionCache(1000);
+	private final TagGraph tags = new TagGraph();
+	private File indexFile;
 
 	/**
 	 * Creates a new in-memory database for managing questions.
@@ -44,28 +71,179 @@ public class HotQuestionDatabase implements IQuestionDatabase,
 	 *            the list of strings that must appear somewhere in a question
 	 *            or its answers. Only letters and numbers are retained. In
 	 *            order to search for questions having a specific tag, use the
-	 *            "tag:<em>tagname</em>" syntax.
+	 *            "tag:<em>tagname</em>" syntax. In order to search for words
+	 *            starting with a given prefix, use the "<em>prefix</em>*"
+	 *            syntax. In order to search for several words in exactly the
+	 *            given order, put them in double quotes.
 	 * @return a list of all the questions that match <em>all</em> the search
 	 *         criteria.
 	 * 
 	 */
 	public List<Question> searchFor(String term) {
-		Set<String> terms = new HashSet();
-		Set<Tag> tags = new HashSet<Tag>();
-		for (String s : term.toLowerCase().split("\\s+")) {
-			if (s.startsWith("tag:") && s.length() > 4) {
-				// search for tag only
-				terms.add(s);
-				tags.add(this.tagDB.get(s.substring(4)));
-			} else {
-				// search for this term anywhere, so ignore all non-alphanumeric
-				// characters
-				terms.addAll(Arrays.asList(s.split("\\W+")));
-				tags.add(this.tagDB.get(s));
+		return this.searchFor(term, 0, Integer.MAX_VALUE).getQuestions();
+	}
+
+	public SearchResult searchFor(String term, int offset, int limit) {
+		return this.searchFor(term, offset, limit, 0);
+	}
+
+	public SearchResult searchFor(String term, int offset, int limit,
+			int facets) {
+		SearchQuery query = new SearchQuery(term, this.tagDB);
+		// only fetch as many results as are needed for the requested page
+		int k = offset + limit < 0 ? Integer.MAX_VALUE : offset + limit;
+		// questions added since the last search are only now compared to the
+		// stored search index, which may change cached results
+		this.cache.invalidate(this.index.flush());
+		long generation = this.cache.getGeneration();
+		CachedSearch cached = this.cache.get(query.getKey(), k, facets);
+		if (cached == null) {
+			cached = this.search(query, k, facets);
+			this.cache.put(query.getKey(), cached, generation);
+		}
+
+		List<Question> results = new ArrayList<Question>();
+		List<Integer> ids = cached.getIds();
+		for (int i = offset; i < ids.size() && i < k; i++) {
+			Question question = this.questions.get(ids.get(i));
+			if (question != null) {
+				results.add(question);
 			}
 		}
-		return Mapper.sort(this.questions.values(),
-				new SearchFilter(terms, tags));
+		return new SearchResult(results, cached.getTotal(), cached
+				.getFacets(facets));
+	}
+
+	public boolean isCached(String term) {
+		this.cache.invalidate(this.index.flush());
+		return this.cache.contains(new SearchQuery(term, this.tagDB).getKey());
+	}
+
+	public void openSearchIndex(File file) throws IOException {
+		this.indexFile = file;
+		if (file.exists()) {
+			this.cache.invalidate(this.index.open(new SearchSegment(file)));
+		}
+	}
+
+	public void flushSearchIndex() {
+		this.cache.invalidate(this.index.flush());
+	}
+
+	public void mergeSearchIndex() throws IOException {
+		if (this.indexFile != null) {
+			this.cache.invalidate(this.index.flush());
+			this.index.merge(this.indexFile);
+		}
+	}
+
+	/**
+	 * Runs a search (without looking at the cache).
+	 * 
+	 * @param query
+	 *            the parsed search
+	 * @param k
+	 *            the number of best matching questions to return
+	 * @param facets
+	 *            the number of most frequent tags to count
+	 * @return the IDs of the best matching questions together with everything
+	 *         the result depends on
+	 */
+	private CachedSearch search(SearchQuery query, int k, int facets) {
+		Collection<Question> candidates;
+		Collection<Question> filtered = null;
+		Map<String, Integer> facetCounts = null;
+		IFilter<Question, Double> filter;
+		final Set<String> fulltext = query.getFulltext();
+		Set<String> dependencies = new HashSet<String>(query.getTerms());
+		Set<String> misspelled = new HashSet<String>();
+		if (query.isTagSearch()) {
+			// only stop words have been searched for, so only tags can match
+			candidates = new HashSet<Question>();
+			for (Tag tag : query.getTags()) {
+				candidates.addAll(tag.getQuestions());
+				dependencies.add("tag:" + tag.getName());
+			}
+			// (only the questions passing the filter are counted, which are
+			// collected while they're rated)
+			final SearchFilter tagFilter = new SearchFilter(query.getTerms(),
+					query.getTags());
+			final Collection<Question> accepted = Collections
+					.synchronizedList(new ArrayList<Question>());
+			filter = new IFilter<Question, Double>() {
+				public Double visit(Question question) {
+					Double score = tagFilter.visit(question);
+					if (score != null) {
+						accepted.add(question);
+					}
+					return score;
+				}
+			};
+			filtered = accepted;
+		} else {
+			// only rate the questions containing all the terms (and rate
+			// them by all the words matching any of the prefixes as well);
+			// terms that aren't known at all are probably misspelled, so
+			// search for the most similar known terms instead
+			List<List<String>> alternatives = new ArrayList<List<String>>();
+			for (String prefix : query.getPrefixes()) {
+				alternatives.add(this.index.expand(prefix));
+			}
+			// (misspelled words are corrected before they're stemmed, as they
+			// mightn't be stemmed the same way as the intended word)
+			for (String word : query.getTerms()) {
+				if (word.startsWith("tag:")) {
+					continue;
+				}
+				String term = Analyzer.get().term(word);
+				if (term != null && fulltext.contains(term)
+						&& this.index.documentFrequency(term) == 0) {
+					fulltext.remove(term);
+					misspelled.add(word);
+					alternatives.add(this.index.correct(word));
+				}
+			}
+			// (these also have to contain all the phrases; their tags are
+			// counted on the way)
+			SearchHits hits = this.index.find(fulltext, alternatives, query
+					.getPhrases(), facets);
+			candidates = hits.getQuestions();
+			facetCounts = hits.getFacets();
+			for (List<String> group : alternatives) {
+				fulltext.addAll(group);
+			}
+			dependencies.addAll(fulltext);
+			filter = new IFilter<Question, Double>() {
+				public Double visit(Question question) {
+					// best matching questions should appear first in an
+					// ascending sort
+					return -scorer.score(index, question, fulltext);
+				}
+			};
+		}
+
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Question question : Mapper.top(candidates, filter, k)) {
+			ids.add(question.id());
+		}
+		int total = candidates.size();
+		if (filtered != null) {
+			facetCounts = this.index.countTags(filtered, facets);
+			total = filtered.size();
+		}
+		return new CachedSearch(ids, total, facetCounts, facets,
+				dependencies, query.getPrefixes(), misspelled);
+	}
+
+	/**
+	 * Replaces the scorer used for ranking search results.
+	 * 
+	 * @param scorer
+	 *            the scorer to use from now on
+	 */
+	public void setScorer(IScorer scorer) {
+		this.scorer = scorer;
+		this.cache.clear();
 	}
 
 	/**
@@ -90,8 +268,10 @@ public class HotQuestionDatabase implements IQuestionDatabase,
 	}
 
 	public Question add(User owner, String content) {
-		Question question = new Question(owner, content, this.tagDB, this);
+		Question question = new Question(owner, content, this.tagDB, this,
+				this);
 		this.questions.put(question.id(), question);
+		this.cache.invalidate(this.index.add(question));
 		return question;
 	}
 
@@ -100,45 +280,67 @@ public class HotQuestionDatabase implements IQuestionDatabase,
 	}
 
 	public int countBestRatedAnswers() {
-		int count = 0;
-		for (Question q : this.questions.values())
-			if (q.hasBestAnswer()) {
-				count++;
-			}
-		return count;
+		return Mapper.filter(this.questions.values(),
+				new IFilter<Question, Boolean>() {
+					public Boolean visit(Question q) {
+						return q.hasBestAnswer();
+					}
+				}).size();
 	}
 
 	public int countAllAnswers() {
-		int count = 0;
-		for (Question q : this.questions.values()) {
-			count += q.answers().size();
-		}
-		return count;
+		return Mapper.sum(this.questions.values(),
+				new IFilter<Question, Integer>() {
+					public Integer visit(Question q) {
+						return q.countAnswers();
+					}
+				});
 	}
 
 	public int countHighRatedAnswers() {
-		int count = 0;
-		for (Question q : this.questions.values()) {
-			for (Answer a : q.answers()) {
-				if (a.isHighRated()) {
-					count += 1;
-				}
-			}
-		}
-		return count;
+		return Mapper.sum(this.questions.values(),
+				new IFilter<Question, Integer>() {
+					public Integer visit(Question q) {
+						int count = 0;
+						for (Answer a : q.answers()) {
+							if (a.isHighRated()) {
+								count += 1;
+							}
+						}
+						return count;
+					}
+				});
 	}
 
 	public List<Question> findSimilar(Question q) {
-		List<Question> result = Mapper.sort(this.questions.values(),
-				new SearchFilter(null, new HashSet<Tag>(q.getTags())));
-		result.remove(q); // don't find the question itself!
-		return result;
+		// only questions sharing a tag can be similar at all
+		return this.tags.findSimilar(q);
+	}
+
+	public List<Tag> relatedTags(Tag tag, int k) {
+		return this.tags.getRelatedTags(tag, k);
 	}
 
 	public List<Question> suggestQuestions(User user) {
-		List<Question> suggestedQuestions = new ArrayList<Question>();
+		long generation = this.suggestions.getGeneration();
+		List<Question> cached = this.suggestions.get(user);
+		if (cached != null) {
+			// suggestions may have got too old in the meantime
+			boolean outdated = false;
+			for (Question q : cached)
+				if (q.getAgeInDays() > 120) {
+					outdated = true;
+					break;
+				}
+			if (!outdated)
+				return cached;
+		}
+
+		Set<Question> suggestedQuestions = new LinkedHashSet<Question>();
 		List<Question> sortedAnsweredQuestions = user
 				.getSortedAnsweredQuestions();
+		Set<Question> answeredQuestions = new HashSet<Question>(
+				sortedAnsweredQuestions);
 
 		/*
 		 * Don't list questions that have many answers or already have a best
@@ -146,9 +348,10 @@ public class HotQuestionDatabase implements IQuestionDatabase,
 		 * not be the owner of the suggested question. Remove duplicates.
 		 */
 		for (Question q : sortedAnsweredQuestions) {
+			if (suggestedQuestions.size() >= 6)
+				break;
 			for (Question similarQ : this.findSimilar(q)) {
-				if (!suggestedQuestions.contains(similarQ)
-						&& !sortedAnsweredQuestions.contains(similarQ)
+				if (!answeredQuestions.contains(similarQ)
 						&& similarQ.owner() != user
 						&& similarQ.getAgeInDays() <= 120
 						&& similarQ.answers().size() < 10
@@ -157,111 +360,43 @@ public class HotQuestionDatabase implements IQuestionDatabase,
 				}
 			}
 		}
-		if (suggestedQuestions.size() > 6)
-			return suggestedQuestions.subList(0, 6);
-		return suggestedQuestions;
-
+		List<Question> result = new ArrayList<Question>(suggestedQuestions);
+		if (result.size() > 6)
+			result = new ArrayList<Question>(result.subList(0, 6));
+		result = Collections.unmodifiableList(result);
+		this.suggestions.put(user, result, sortedAnsweredQuestions,
+				generation);
+		return result;
 	}
 
-	/**
-	 * Having given a best answer gives the equivalent of an additional
-	 * BEST_ANSWER_BONUS votes.
-	 */
-	private final int BEST_ANSWER_BONUS = 5;
-
-	/**
-	 * Collects for all tags the vote counts for all the users that have
-	 * answered a question labeled with that tag.
-	 * 
-	 * @return a statistics map allowing to either determine the experts for a
-	 *         given tag or the tags this user is an expert for
-	 */
 	public Map<Tag, Map<User, Integer>> collectExpertiseStatistics() {
-		Map<Tag, Map<User, Integer>> stats = new HashMap();
-		// only check each question (and answer) once
-		for (Question question : this.all()) {
-			List<Tag> tags = question.getTags();
-			// skip untagged questions
-			if (tags.isEmpty())
-				continue;
-			for (Answer answer : question.answers()) {
-				User user = answer.owner();
-				// don't consider answers by the question's author and by
-				// anonymous users
-				if (user == question.owner() || user == null)
-					continue;
-				for (Tag tag : tags) {
-					// get the statistics for a given tag (initialize them at
-					// the first pass)
-					Map<User, Integer> tagStats = stats.get(tag);
-					if (tagStats == null) {
-						tagStats = new HashMap();
-						stats.put(tag, tagStats);
-					}
-					// update the vote count for this answer's owner
-					Integer count = tagStats.get(user);
-					if (count == null)
-						count = 0;
-					// a best answer count as 5 additional up-votes
-					if (answer.isBestAnswer())
-						count += BEST_ANSWER_BONUS;
-					tagStats.put(user, count + answer.rating());
-				}
-			}
-		}
-
-		return stats;
+		return this.expertise.getStatistics();
 	}
 
-	/**
-	 * Having less than MINIMAL_EXPERTISE_THRESHOLD votes on a topic prevents a
-	 * user from being an expert.
-	 */
-	private final int MINIMAL_EXPERTISE_THRESHOLD = 2;
-	/**
-	 * What percentage of most proficient users are considered experts on a
-	 * topic.
-	 */
-	private final int EXPERTISE_PERCENTILE = 20;
-
 	public List<Tag> getExpertise(User user) {
-		Map<Tag, Map<User, Integer>> stats = this.collectExpertiseStatistics();
-
-		List<Tag> expertise = new ArrayList();
-		for (Tag tag : stats.keySet()) {
-			// ignore tags this user knows nothing about
-			if (!stats.get(tag).containsKey(user)) {
-				continue;
-			}
-			// ignore tags this user knows hardly anything about
-			if (stats.get(tag).get(user) < this.MINIMAL_EXPERTISE_THRESHOLD) {
-				continue;
-			}
-
-			Map<User, Integer> tagStats = stats.get(tag);
-			List<User> experts = Mapper.sortByValue(tagStats);
-			int threshold = (100 - this.EXPERTISE_PERCENTILE) * experts.size()
-					/ 100;
-			if (tagStats.get(user) >= tagStats.get(experts.get(threshold))) {
-				expertise.add(tag);
-			}
-		}
+		return this.expertise.getExpertise(user);
+	}
 
-		return expertise;
+	public List<User> topExperts(Tag tag, int k) {
+		return this.expertise.getTopExperts(tag, k);
 	}
 
 	public void clear() {
 		this.questions.clear();
+		this.index.clear();
+		this.cache.clear();
+		this.expertise.clear();
+		this.suggestions.clear();
+		this.tags.clear();
 	}
 
-	public List<Question> getWatchList(User user) {
-		List<Question> watchList = new ArrayList();
-		for (Question question : this.questions.values()) {
-			if (question.hasObserver(user)) {
-				watchList.add(question);
-			}
-		}
-		return watchList;
+	public List<Question> getWatchList(final User user) {
+		return Mapper.filter(this.questions.values(),
+				new IFilter<Question, Boolean>() {
+					public Boolean visit(Question question) {
+						return question.hasObserver(user);
+					}
+				});
 	}
 
 	/**
@@ -272,5 +407,48 @@ public class HotQuestionDatabase implements IQuestionDatabase,
 	 */
 	public void cleanUp(Question question) {
 		this.questions.remove(question.id());
+		this.cache.invalidate(this.index.remove(question));
+		this.expertise.remove(question);
+		this.tags.remove(question);
+		this.suggestions.invalidate(question);
+	}
+
+	/**
+	 * Keeps the search index (and cached search results), the expertise
+	 * statistics, the tag graph, the tags' activity and the cached suggestions
+	 * up to date whenever a question, its answers, their votes or the
+	 * question's tags change (Callback method).
+	 * 
+	 * @see models.helpers.IChangeListener#changed(java.lang.Object,
+	 *      java.lang.Object)
+	 */
+	public void changed(Question question, Object cause) {
+		if (!this.questions.containsKey(question.id()))
+			return;
+		// votes don't change what can be searched for
+		if (!(cause instanceof Vote)) {
+			this.cache.invalidate(this.index.add(question));
+		}
+		this.expertise.update(question);
+		Collection<Tag> active = this.tags.update(question);
+		if (cause instanceof Answer) {
+			// new answers (but not anonymized nor deleted ones)
+			Answer answer = (Answer) cause;
+			if (question.hasAnswer(answer) && answer.owner() != null) {
+				active = question.getTags();
+			}
+		} else if (cause instanceof Vote) {
+			// new votes (but not cancelled ones)
+			Vote vote = (Vote) cause;
+			Entry entry = vote.getEntry();
+			if (vote.up() ? entry.hasUpVote(vote.owner()) : entry
+					.hasDownVote(vote.owner())) {
+				active = question.getTags();
+			}
+		}
+		for (Tag tag : active) {
+			this.tagDB.registerActivity(tag);
+		}
+		this.suggestions.invalidate(question);
 	}
 }
@@ -2,17 +2,68 @@ package models.database.HotDatabase;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
+import models.SysInfo;
 import models.Tag;
 import models.database.ITagDatabase;
 import models.helpers.ICleanup;
+import models.helpers.IFilter;
+import models.helpers.Mapper;
 
 public class HotTagDatabase implements ITagDatabase, ICleanup<Tag> {
-	private final Map<String, Tag> tags = new HashMap<String, Tag>();
+	/** The time after which a tag's activity has decayed to one half. */
+	private static final long ACTIVITY_HALF_LIFE_IN_MS = 24 * 60 * 60 * 1000;
+
+	/** How long the list of trending tags is reused before being refreshed. */
+	private static final long TRENDING_REFRESH_IN_MS = 5 * 60 * 1000;
+
+	/** An exponentially decaying activity counter. */
+	private static class Activity {
+		private double value;
+		private long time;
+
+		/**
+		 * @param now
+		 *            the current time in milliseconds
+		 * @return the counter's value decayed to the given time
+		 */
+		private double valueAt(long now) {
+			return this.value
+					* Math.pow(0.5, (double) (now - this.time)
+							/ ACTIVITY_HALF_LIFE_IN_MS);
+		}
+	}
+
+	/** All tags sorted by name, so that prefixes can be looked up as ranges. */
+	private final TreeMap<String, Tag> tags = new TreeMap<String, Tag>();
+
+	/** The IDs of deleted tags, so that tag IDs remain dense. */
+	private final LinkedList<Integer> freeIds = new LinkedList<Integer>();
+
+	/** The lowest ID which has never been used. */
+	private int nextId = 0;
+
+	/**
+	 * The activity of all tags by name (so that it's kept when a tag is
+	 * deleted and soon used again).
+	 */
+	private final Map<String, Activity> activities = new HashMap<String, Activity>();
+
+	/** The most active tags as of the last refresh. */
+	private List<Tag> trending = new ArrayList<Tag>();
+
+	/** The number of tags selected at the last refresh. */
+	private int trendingCount = 0;
+
+	/** The time of the last refresh of the trending tags. */
+	private long trendingTime = 0;
 
 	public Collection<Tag> all() {
 		return this.tags.values();
@@ -22,8 +73,14 @@ public class HotTagDatabase implements ITagDatabase, ICleanup<Tag> {
 		Tag tag = this.tags.get(name);
 		if (tag == null) {
 			try {
-				tag = new Tag(name, this);
+				tag = new Tag(name, this.freeIds.isEmpty() ? this.nextId
+						: this.freeIds.getFirst(), this);
 				this.tags.put(name, tag);
+				if (tag.id() == this.nextId) {
+					this.nextId++;
+				} else {
+					this.freeIds.removeFirst();
+				}
 			} catch (IllegalArgumentException ex) {
 				// this tag's name wasn't valid, make sure it conforms to Tag.tagRegex
 			}
@@ -33,19 +90,122 @@ public class HotTagDatabase implements ITagDatabase, ICleanup<Tag> {
 
 	public List<String> suggestTagNames(String start) {
 		List<String> tagNames = new ArrayList<String>();
+		for (Tag tag : this.startingWith(start).values()) {
+			tagNames.add(tag.getName());
+		}
+		return tagNames;
+	}
+
+	public List<String> suggestTagNames(String start, int count) {
+		List<String> tagNames = new ArrayList<String>();
+		for (Tag tag : Mapper.top(this.startingWith(start).values(),
+				new IFilter<Tag, Integer>() {
+					public Integer visit(Tag tag) {
+						// most used tags should appear first in an ascending
+						// sort
+						return -tag.countQuestions();
+					}
+				}, count)) {
+			tagNames.add(tag.getName());
+		}
+		return tagNames;
+	}
+
+	/**
+	 * Gets the range of all tags whose names start with a given prefix.
+	 * 
+	 * @param start
+	 *            the start of all the tag names (or <code>null</code> for all
+	 *            tags)
+	 * @return a sorted view of all the matching tags
+	 */
+	private SortedMap<String, Tag> startingWith(String start) {
+		if (start == null || start.length() == 0)
+			return this.tags;
+		start = start.toLowerCase();
+		// all names starting with the prefix sort before the prefix followed
+		// by the highest possible character
+		return this.tags.subMap(start, start + Character.MAX_VALUE);
+	}
+
+	public synchronized void registerActivity(Tag tag) {
+		long now = SysInfo.now().getTime();
+		Activity activity = this.activities.get(tag.getName());
+		if (activity == null) {
+			activity = new Activity();
+			this.activities.put(tag.getName(), activity);
+		} else {
+			activity.value = activity.valueAt(now);
+		}
+		activity.value++;
+		activity.time = now;
+	}
+
+	public synchronized double getActivity(Tag tag) {
+		Activity activity = this.activities.get(tag.getName());
+		return activity == null ? 0 : activity.valueAt(SysInfo.now()
+				.getTime());
+	}
 
-		for (Tag tag : this.all()) {
-			if (start == null || tag.getName().startsWith(start.toLowerCase())) {
-				tagNames.add(tag.getName());
+	public synchronized List<Tag> getTrendingTags(int count) {
+		final long now = SysInfo.now().getTime();
+		boolean outdated = now - this.trendingTime > TRENDING_REFRESH_IN_MS
+				|| now < this.trendingTime;
+		if (outdated || count > this.trendingCount) {
+			this.refreshTrendingTags(now, Math.max(count, 10));
+		}
+		List<Tag> trending = new ArrayList<Tag>();
+		for (Tag tag : this.trending) {
+			if (trending.size() >= count)
+				break;
+			// tags deleted in the meantime aren't trending anymore
+			if (this.tags.get(tag.getName()) == tag) {
+				trending.add(tag);
 			}
 		}
-		Collections.sort(tagNames);
+		return trending;
+	}
 
-		return tagNames;
+	/**
+	 * Selects the most active tags and forgets about the activity of deleted
+	 * tags which has (almost) completely decayed.
+	 * 
+	 * @param now
+	 *            the current time in milliseconds
+	 * @param count
+	 *            the number of tags to select
+	 */
+	private void refreshTrendingTags(final long now, int count) {
+		Iterator<Map.Entry<String, Activity>> it = this.activities.entrySet()
+				.iterator();
+		List<Tag> active = new ArrayList<Tag>();
+		while (it.hasNext()) {
+			Map.Entry<String, Activity> entry = it.next();
+			Tag tag = this.tags.get(entry.getKey());
+			if (tag != null) {
+				active.add(tag);
+			} else if (entry.getValue().valueAt(now) < 0.01) {
+				it.remove();
+			}
+		}
+		this.trending = Mapper.top(active, new IFilter<Tag, Double>() {
+			public Double visit(Tag tag) {
+				// most active tags should appear first in an ascending sort
+				return -activities.get(tag.getName()).valueAt(now);
+			}
+		}, count);
+		this.trendingCount = count;
+		this.trendingTime = now;
 	}
 
-	public void clear() {
+	public synchronized void clear() {
 		this.tags.clear();
+		this.freeIds.clear();
+		this.nextId = 0;
+		this.activities.clear();
+		this.trending = new ArrayList<Tag>();
+		this.trendingCount = 0;
+		this.trendingTime = 0;
 	}
 
 	/**
@@ -55,6 +215,10 @@ public class HotTagDatabase implements ITagDatabase, ICleanup<Tag> {
 	 * @see models.helpers.ICleanup#cleanUp(java.lang.Object)
 	 */
 	public void cleanUp(Tag tag) {
-		this.tags.remove(tag.getName());
+		// a tag might have been replaced already
+		if (this.tags.get(tag.getName()) == tag) {
+			this.tags.remove(tag.getName());
+			this.freeIds.addFirst(tag.id());
+		}
 	}
 }
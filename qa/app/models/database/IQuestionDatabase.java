@@ -1,9 +1,12 @@
 package models.database;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 import models.Question;
+import models.SearchResult;
 import models.Tag;
 import models.User;
 
@@ -42,6 +45,85 @@ public interface IQuestionDatabase {
 	 */
 	public List<Question> searchFor(String term);
 
+	/**
+	 * Search the <code>Questions</code> in the DB for the term, only returning
+	 * a single page of the results. This is considerably cheaper than
+	 * <code>searchFor(term)</code> for searches with many results, as only the
+	 * best <code>offset + limit</code> results have to be sorted.
+	 * 
+	 * @param term
+	 *            words to be searched. Only alphabetic characters are taken
+	 *            into account.
+	 * @param offset
+	 *            how many of the best results to skip
+	 * @param limit
+	 *            the maximum number of results to return
+	 * @return at most <code>limit</code> questions sorted descending by
+	 *         relevance and the (estimated) total number of results
+	 */
+	public SearchResult searchFor(String term, int offset, int limit);
+
+	/**
+	 * Search the <code>Questions</code> in the DB for the term, only returning
+	 * a single page of the results together with the tags most of all the
+	 * results carry (e.g. for narrowing down the search).
+	 * 
+	 * @param term
+	 *            words to be searched. Only alphabetic characters are taken
+	 *            into account.
+	 * @param offset
+	 *            how many of the best results to skip
+	 * @param limit
+	 *            the maximum number of results to return
+	 * @param facets
+	 *            the maximum number of tags to return
+	 * @return at most <code>limit</code> questions sorted descending by
+	 *         relevance, the (estimated) total number of results and the
+	 *         most frequent tags among all results
+	 */
+	public SearchResult searchFor(String term, int offset, int limit,
+			int facets);
+
+	/**
+	 * Checks whether the results of a search are still cached, so that
+	 * repeating the search is hardly more expensive than displaying a page.
+	 * 
+	 * @param term
+	 *            words to be searched
+	 * @return true, if an equivalent search has lately been done and none of
+	 *         its results have changed since
+	 */
+	public boolean isCached(String term);
+
+	/**
+	 * Backs the search index with a segment file, so that questions which
+	 * haven't changed since the file was written don't have to be analyzed
+	 * again. The file is also where <code>mergeSearchIndex</code> writes to.
+	 * 
+	 * @param file
+	 *            the segment file (which doesn't have to exist yet)
+	 * @throws IOException
+	 *             if the file exists but can't be read
+	 */
+	public void openSearchIndex(File file) throws IOException;
+
+	/**
+	 * Compares all the questions added since the search index was opened (or
+	 * last searched) to its segment file, which otherwise happens on the next
+	 * search. This is meant to be called in the background once all
+	 * questions have been loaded, so that no search has to wait for it.
+	 */
+	public void flushSearchIndex();
+
+	/**
+	 * Writes all recent changes to the search index to its segment file (see
+	 * <code>openSearchIndex</code>). Does nothing if no file has been opened.
+	 * 
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public void mergeSearchIndex() throws IOException;
+
 	/**
 	 * Adds a question to the DB.
 	 * 
@@ -94,6 +176,19 @@ public interface IQuestionDatabase {
 	 */
 	public List<Question> findSimilar(Question q);
 
+	/**
+	 * Returns the tags which most often label the same questions as the given
+	 * tag.
+	 * 
+	 * @param tag
+	 *            reference tag
+	 * @param k
+	 *            the maximum number of tags to return
+	 * @return a list of at most <code>k</code> related tags sorted desc by the
+	 *         number of questions they share with the given tag.
+	 */
+	public List<Tag> relatedTags(Tag tag, int k);
+
 	/**
 	 * Get a list of all questions that the given user might also know to
 	 * answer, calculated by similarity to questions the user has given the best
@@ -129,6 +224,20 @@ public interface IQuestionDatabase {
 	 */
 	public List<Tag> getExpertise(User user);
 
+	/**
+	 * Gets the users with the highest vote counts for a topic (as counted by
+	 * <code>collectExpertiseStatistics</code>), without having to sort all of
+	 * the topic's answerers.
+	 * 
+	 * @param tag
+	 *            the topic to get the top answerers for
+	 * @param k
+	 *            the maximum number of users to return
+	 * @return the (at most) <code>k</code> users with the most votes for this
+	 *         tag, the one with the most votes first
+	 */
+	public List<User> topExperts(Tag tag, int k);
+
 	/**
 	 * Returns the list of all the questions the given user is currently
 	 * observing.
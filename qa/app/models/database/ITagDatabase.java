@@ -42,6 +42,50 @@ public interface ITagDatabase {
 	 */
 	public List<String> suggestTagNames(String start);
 
+	/**
+	 * Suggest the most often used tag names that start with a given term, so
+	 * that the tag name could e.g. be auto-completed.
+	 * 
+	 * @param start
+	 *            the start of all the tag names
+	 * @param count
+	 *            the maximum number of tag names to return
+	 * @return at most <code>count</code> tag names, the ones used by the most
+	 *         questions first (and tags used equally often sorted by name)
+	 */
+	public List<String> suggestTagNames(String start, int count);
+
+	/**
+	 * Registers some activity (a new question, answer or vote) for a tag. A
+	 * tag's activity decays exponentially over time, so that recent activity
+	 * counts more than activity long ago.
+	 * 
+	 * @param tag
+	 *            the tag of the question which has been asked, answered or
+	 *            voted on
+	 */
+	public void registerActivity(Tag tag);
+
+	/**
+	 * Gets the current (decayed) activity of a tag.
+	 * 
+	 * @param tag
+	 *            the tag to get the activity of
+	 * @return the number of registered activities, each one counting half as
+	 *         much for each day that has passed since
+	 */
+	public double getActivity(Tag tag);
+
+	/**
+	 * Gets the most active tags. The list is only refreshed every few
+	 * minutes, so that it's cheap to get it for each page view.
+	 * 
+	 * @param count
+	 *            the maximum number of tags to return
+	 * @return at most <code>count</code> tags, the most active first
+	 */
+	public List<Tag> getTrendingTags(int count);
+
 	/**
 	 * Removes each and every Tag from the DB. This means, that
 	 * <ul>
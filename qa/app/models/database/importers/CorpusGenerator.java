@@ -0,0 +1,494 @@
+package models.database.importers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import models.Answer;
+import models.Entry;
+import models.Question;
+import models.SysInfo;
+import models.User;
+import models.database.IDatabase;
+
+/**
+ * Generates a synthetic data set of users, questions, answers, comments,
+ * votes, tags and watchers for load tests and benchmarks. The data set is
+ * completely determined by its seed and sizes, so that the same data can be
+ * recreated for each run.
+ * 
+ * As on real Q&A sites, the popularity of tags and words as well as the
+ * activity of users and the numbers of answers, comments, votes and watchers
+ * per question all follow Zipf distributions (i.e. a few tags and users are
+ * very common while most are rare).
+ * 
+ * The data can either be stored directly into a database (see
+ * <code>generate</code>) or be written as XML for the {@link Importer} (see
+ * <code>writeXML</code>), which however only knows about users, questions,
+ * answers and tags.
+ */
+public class CorpusGenerator {
+
+	/** The exponent of all Zipf distributions (1 for the classic 1/rank). */
+	private static final double SKEW = 1.0;
+
+	/** The number of different words the content is made up of. */
+	private static final int VOCABULARY = 20000;
+
+	/** The maximum number of tags, answers, etc. per question. */
+	private static final int MAX_TAGS = 5, MAX_ANSWERS = 30, MAX_COMMENTS = 10,
+			MAX_VOTES = 50, MAX_WATCHERS = 10;
+
+	/** The creation date of the first question (in seconds since 1970). */
+	private static final long START = 1288566000;
+
+	/** The time between two consecutive questions (in seconds). */
+	private static final long INTERVAL = 60;
+
+	/**
+	 * Receives the generated data in the order in which it's generated: all
+	 * users first, then all questions and finally the answers, comments, votes
+	 * and watchers of one question after the other.
+	 */
+	private interface Sink {
+
+		void user(int id, String name);
+
+		void question(int id, int owner, long time, String title,
+				String body, Set<String> tags);
+
+		void answer(int id, int question, int owner, long time, String body,
+				boolean accepted);
+
+		/** Votes for a question (<code>answer == -1</code>) or an answer. */
+		void vote(int question, int answer, int voter, boolean up);
+
+		void comment(int question, int owner, String body);
+
+		void watch(int question, int watcher);
+	}
+
+	/**
+	 * Samples ranks 1 to <code>n</code> with probabilities proportional to
+	 * <code>1 / rank<sup>SKEW</sup></code>.
+	 */
+	private static class Zipf {
+
+		/** The cumulative probabilities of all ranks. */
+		private final double[] cumulative;
+
+		private Zipf(int n) {
+			this.cumulative = new double[n];
+			double sum = 0;
+			for (int rank = 1; rank <= n; rank++) {
+				sum += 1 / Math.pow(rank, SKEW);
+				this.cumulative[rank - 1] = sum;
+			}
+			for (int i = 0; i < n; i++) {
+				this.cumulative[i] /= sum;
+			}
+		}
+
+		/**
+		 * @return a rank from 1 to <code>n</code>
+		 */
+		private int next(Random random) {
+			int index = Arrays.binarySearch(this.cumulative, random
+					.nextDouble());
+			return Math.min((index < 0 ? -index - 1 : index) + 1,
+					this.cumulative.length);
+		}
+	}
+
+	private final long seed;
+	private final int users, questions, tags;
+
+	/**
+	 * Describes a data set to be generated.
+	 * 
+	 * @param seed
+	 *            the seed all random choices derive from
+	 * @param users
+	 *            the number of users
+	 * @param questions
+	 *            the number of questions
+	 * @param tags
+	 *            the number of different tags
+	 */
+	public CorpusGenerator(long seed, int users, int questions, int tags) {
+		this.seed = seed;
+		this.users = Math.max(1, users);
+		this.questions = questions;
+		this.tags = Math.max(1, tags);
+	}
+
+	/**
+	 * Writes a data set as XML to the standard output, e.g. for importing it
+	 * on a test server.
+	 * 
+	 * @param args
+	 *            the seed, the number of users, questions and tags
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.err.println("Usage: CorpusGenerator seed users questions tags");
+			System.exit(1);
+		}
+		new CorpusGenerator(Long.parseLong(args[0]), Integer.parseInt(args[1]),
+				Integer.parseInt(args[2]), Integer.parseInt(args[3]))
+				.writeXML(new BufferedWriter(new OutputStreamWriter(System.out,
+						"utf-8")));
+	}
+
+	/**
+	 * Stores the data set in a database. The cheating detection is suspended
+	 * meanwhile, as the generated users post far more than any real user could.
+	 * 
+	 * @param db
+	 *            the database to fill
+	 */
+	public void generate(final IDatabase db) {
+		boolean testMode = SysInfo.isInTestMode();
+		SysInfo.setTestMode(true);
+		try {
+			this.generate(new Sink() {
+				private final List<User> users = new ArrayList<User>();
+				private final List<Question> questions = new ArrayList<Question>();
+				private final List<Answer> answers = new ArrayList<Answer>();
+
+				public void user(int id, String name) {
+					User user = db.users().register(name, "secret",
+							name + "@example.org");
+					user.confirm();
+					this.users.add(user);
+				}
+
+				public void question(int id, int owner, long time,
+						String title, String body, Set<String> tags) {
+					Question question = db.questions().add(
+							this.users.get(owner), content(title, body));
+					question.setTimestamp(new Date(time * 1000));
+					question.setTagString(join(tags));
+					this.questions.add(question);
+				}
+
+				public void answer(int id, int question, int owner,
+						long time, String body, boolean accepted) {
+					Question parent = this.questions.get(question);
+					Answer answer = parent.answer(this.users.get(owner),
+							content("", body));
+					answer.setTimestamp(new Date(time * 1000));
+					if (accepted) {
+						parent.setBestAnswer(answer);
+					}
+					this.answers.add(answer);
+				}
+
+				public void vote(int question, int answer, int voter,
+						boolean up) {
+					Entry entry = answer == -1 ? this.questions.get(question)
+							: this.answers.get(answer);
+					if (up) {
+						entry.voteUp(this.users.get(voter));
+					} else {
+						entry.voteDown(this.users.get(voter));
+					}
+				}
+
+				public void comment(int question, int owner, String body) {
+					this.questions.get(question).comment(this.users.get(owner),
+							body);
+				}
+
+				public void watch(int question, int watcher) {
+					this.users.get(watcher).startObserving(
+							this.questions.get(question));
+				}
+			});
+		} finally {
+			SysInfo.setTestMode(testMode);
+		}
+	}
+
+	/**
+	 * Writes the data set as XML which can be read by the {@link Importer}
+	 * (comments, votes and watchers are left out, as the importer doesn't know
+	 * about them).
+	 * 
+	 * @param out
+	 *            the writer to write the XML to
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void writeXML(Writer out) throws IOException {
+		XMLSink sink = new XMLSink(out);
+		out.write("<?xml version=\"1.0\" ?><QA>\n");
+		this.generate(sink);
+		sink.startSection(null);
+		out.write("</QA>\n");
+		out.flush();
+		if (sink.failure != null)
+			throw sink.failure;
+	}
+
+	/**
+	 * Writes the generated users, questions and answers as XML (see
+	 * {@link XMLParser}).
+	 */
+	private static class XMLSink implements Sink {
+
+		/** All the sections in the order they have to appear in. */
+		private static final List<String> SECTIONS = Arrays.asList("users",
+				"questions", "answers");
+
+		private final Writer out;
+
+		/** The section currently being written (or <code>null</code>). */
+		private String section;
+
+		/** The first exception that happened while writing. */
+		private IOException failure;
+
+		private XMLSink(Writer out) {
+			this.out = out;
+		}
+
+		public void user(int id, String name) {
+			this.startSection("users");
+			this.write("<user id=\"" + id + "\"><displayname>" + name
+					+ "</displayname><age>-1</age>"
+					+ "<ismoderator>false</ismoderator><email>" + name
+					+ "@example.org</email><password>secret</password>"
+					+ "<aboutme></aboutme><location></location>"
+					+ "<website></website></user>\n");
+		}
+
+		public void question(int id, int owner, long time, String title,
+				String body, Set<String> tags) {
+			this.startSection("questions");
+			StringBuilder xml = new StringBuilder();
+			xml.append("<question id=\"").append(id).append("\"><ownerid>")
+					.append(owner).append("</ownerid><creationdate>").append(
+							time).append("</creationdate><lastactivity>")
+					.append(time).append("</lastactivity><body>").append(
+							escape(body)).append("</body><title>").append(
+							escape(title)).append("</title><tags>");
+			for (String tag : tags) {
+				xml.append("<tag>").append(escape(tag)).append("</tag>");
+			}
+			xml.append("</tags></question>\n");
+			this.write(xml.toString());
+		}
+
+		public void answer(int id, int question, int owner, long time,
+				String body, boolean accepted) {
+			this.startSection("answers");
+			this.write("<answer id=\"" + id + "\"><ownerid>" + owner
+					+ "</ownerid><questionid>" + question
+					+ "</questionid><creationdate>" + time
+					+ "</creationdate><lastactivity>" + time
+					+ "</lastactivity><body>" + escape(body)
+					+ "</body><title></title><accepted>" + accepted
+					+ "</accepted></answer>\n");
+		}
+
+		public void vote(int question, int answer, int voter, boolean up) {
+		}
+
+		public void comment(int question, int owner, String body) {
+		}
+
+		public void watch(int question, int watcher) {
+		}
+
+		/**
+		 * Closes the current section and all the following sections up to
+		 * the given one (so that empty sections are written as well).
+		 * 
+		 * @param section
+		 *            the section to start (or <code>null</code> for closing
+		 *            all sections)
+		 */
+		private void startSection(String section) {
+			if (section != null && section.equals(this.section))
+				return;
+			int next = this.section == null ? 0 : SECTIONS
+					.indexOf(this.section) + 1;
+			if (this.section != null) {
+				this.write("</" + this.section + ">\n");
+			}
+			int last = section == null ? SECTIONS.size() : SECTIONS
+					.indexOf(section);
+			for (int i = next; i < last; i++) {
+				this.write("<" + SECTIONS.get(i) + ">\n</" + SECTIONS.get(i)
+						+ ">\n");
+			}
+			if (section != null) {
+				this.write("<" + section + ">\n");
+			}
+			this.section = section;
+		}
+
+		private void write(String xml) {
+			if (this.failure != null)
+				return;
+			try {
+				this.out.write(xml);
+			} catch (IOException e) {
+				this.failure = e;
+			}
+		}
+	}
+
+	/**
+	 * Generates the whole data set.
+	 * 
+	 * @param sink
+	 *            where to pass all the generated data to
+	 */
+	private void generate(Sink sink) {
+		Random random = new Random(this.seed);
+		Zipf words = new Zipf(VOCABULARY);
+		Zipf tagPopularity = new Zipf(this.tags);
+		Zipf activity = new Zipf(this.users);
+		Zipf tagCounts = new Zipf(MAX_TAGS);
+		Zipf answerCounts = new Zipf(MAX_ANSWERS + 1);
+		Zipf commentCounts = new Zipf(MAX_COMMENTS + 1);
+		Zipf voteCounts = new Zipf(MAX_VOTES + 1);
+		Zipf watcherCounts = new Zipf(MAX_WATCHERS + 1);
+
+		String[] vocabulary = new String[VOCABULARY];
+		for (int i = 0; i < VOCABULARY; i++) {
+			vocabulary[i] = word(random);
+		}
+		Set<String> names = new LinkedHashSet<String>();
+		while (names.size() < this.tags) {
+			names.add(word(random));
+		}
+		String[] tagNames = names.toArray(new String[this.tags]);
+
+		for (int user = 0; user < this.users; user++) {
+			sink.user(user, "user" + user);
+		}
+		for (int question = 0; question < this.questions; question++) {
+			Set<String> tags = new LinkedHashSet<String>();
+			for (int i = tagCounts.next(random); i > 0; i--) {
+				tags.add(tagNames[tagPopularity.next(random) - 1]);
+			}
+			sink.question(question, activity.next(random) - 1, START
+					+ question * INTERVAL, sentence(random, words, vocabulary,
+					8), text(random, words, vocabulary), tags);
+		}
+
+		int answers = 0;
+		for (int question = 0; question < this.questions; question++) {
+			int count = answerCounts.next(random) - 1;
+			int accepted = count > 0 && random.nextBoolean() ? random
+					.nextInt(count) : -1;
+			for (int i = 0; i < count; i++) {
+				sink.answer(answers, question, activity.next(random) - 1, START + question
+						* INTERVAL + (i + 1) * INTERVAL / (count + 1), text(
+						random, words, vocabulary), i == accepted);
+				this.vote(sink, random, voteCounts, activity, question,
+						answers);
+				answers++;
+			}
+			this.vote(sink, random, voteCounts, activity, question, -1);
+			for (int i = commentCounts.next(random) - 1; i > 0; i--) {
+				sink.comment(question, activity.next(random) - 1, sentence(
+						random, words, vocabulary, 12));
+			}
+			for (int i = watcherCounts.next(random) - 1; i > 0; i--) {
+				sink.watch(question, activity.next(random) - 1);
+			}
+		}
+	}
+
+	/**
+	 * Generates the votes for a question or an answer.
+	 */
+	private void vote(Sink sink, Random random, Zipf voteCounts,
+			Zipf activity, int question, int answer) {
+		for (int i = voteCounts.next(random) - 1; i > 0; i--) {
+			// four out of five votes are up-votes
+			sink.vote(question, answer, activity.next(random) - 1, random
+					.nextInt(5) > 0);
+		}
+	}
+
+	/**
+	 * Makes up a text of one to three paragraphs.
+	 */
+	private static String text(Random random, Zipf words, String[] vocabulary) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 1 + random.nextInt(3); i > 0; i--) {
+			for (int j = 1 + random.nextInt(4); j > 0; j--) {
+				text.append(sentence(random, words, vocabulary,
+						5 + random.nextInt(15))).append(". ");
+			}
+			text.append("\n\n");
+		}
+		return text.toString().trim();
+	}
+
+	/**
+	 * Strings words together, the most common ones being the most likely.
+	 */
+	private static String sentence(Random random, Zipf words,
+			String[] vocabulary, int length) {
+		StringBuilder sentence = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				sentence.append(' ');
+			}
+			sentence.append(vocabulary[words.next(random) - 1]);
+		}
+		sentence.setCharAt(0, Character.toUpperCase(sentence.charAt(0)));
+		return sentence.toString();
+	}
+
+	/**
+	 * Makes up a random lowercase word of two to ten letters.
+	 */
+	private static String word(Random random) {
+		char[] letters = new char[2 + random.nextInt(9)];
+		for (int i = 0; i < letters.length; i++) {
+			letters[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(letters);
+	}
+
+	/**
+	 * Puts a question or an answer together the same way the
+	 * {@link XMLParser} does.
+	 */
+	private static String content(String title, String body) {
+		return "<h3>" + title + "</h3>\n" + body;
+	}
+
+	private static String join(Set<String> tags) {
+		StringBuilder joined = new StringBuilder();
+		for (String tag : tags) {
+			joined.append(tag).append(' ');
+		}
+		return joined.toString().trim();
+	}
+
+	/**
+	 * Escapes text for use inside an XML element.
+	 */
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">",
+				"&gt;");
+	}
+}
@@ -0,0 +1,196 @@
+package models.helpers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An Analyzer turns texts into the terms under which they are to be found by
+ * a search. The text is first split up into words (tokenizer), each of which
+ * is then passed through a chain of filters (e.g. lowercase, stop words,
+ * stemmer), any of which may drop a word by returning <code>null</code>.
+ * 
+ * The same Analyzer must be used for the content being indexed and for the
+ * searches, which is why there's a single current instance (see
+ * <code>get</code>) which is to be set only once at application start.
+ */
+public class Analyzer {
+
+	/** The analyzer used for all content and searches. */
+	private static Analyzer instance;
+
+	/** The name identifying the terms this analyzer produces. */
+	private final String name;
+
+	/** The filters each word is passed through in order. */
+	private final List<IFilter<String, String>> filters;
+
+	/**
+	 * Creates a new analyzer.
+	 * 
+	 * @param name
+	 *            a name identifying the terms the analyzer produces (i.e.
+	 *            different for any two analyzers producing different terms)
+	 * @param filters
+	 *            the filters to pass each word through in order
+	 */
+	public Analyzer(String name, List<IFilter<String, String>> filters) {
+		this.name = name;
+		this.filters = new ArrayList<IFilter<String, String>>(filters);
+	}
+
+	/**
+	 * Gets the analyzer used for all content and searches (the English one,
+	 * unless configured otherwise).
+	 * 
+	 * @return the current analyzer
+	 */
+	public static Analyzer get() {
+		if (instance == null) {
+			instance = forLanguage("en");
+		}
+		return instance;
+	}
+
+	/**
+	 * Replaces the analyzer used for all content and searches. This has to
+	 * happen before any content is indexed.
+	 * 
+	 * @param analyzer
+	 *            the analyzer to use from now on
+	 */
+	public static void set(Analyzer analyzer) {
+		instance = analyzer;
+	}
+
+	/**
+	 * Creates the analyzer for a language, which lowercases all words, drops
+	 * the language's stop words and stems all remaining words. The analyzer
+	 * can be used by several threads at once (e.g. for parallel scans, see
+	 * {@link Mapper#setParallel(boolean, int)}).
+	 * 
+	 * @param language
+	 *            the language's code ("en", "de" or "fr"; the English
+	 *            analyzer is used for any other language)
+	 * @return the language's analyzer
+	 */
+	public static Analyzer forLanguage(String language) {
+		IFilter<String, String> stemmer;
+		if (language.equals("de")) {
+			stemmer = new GermanStemmer();
+		} else if (language.equals("fr")) {
+			stemmer = new FrenchStemmer();
+		} else {
+			language = "en";
+			// the Porter stemmer keeps its state in fields, so each thread
+			// needs a stemmer of its own
+			final ThreadLocal<PorterStemmer> stemmers = new ThreadLocal<PorterStemmer>() {
+				protected PorterStemmer initialValue() {
+					return new PorterStemmer();
+				}
+			};
+			stemmer = new IFilter<String, String>() {
+				public String visit(String word) {
+					return stemmers.get().visit(word);
+				}
+			};
+		}
+		final Set<String> stopWords = StopWords.get(language);
+		List<IFilter<String, String>> filters = new ArrayList<IFilter<String, String>>();
+		filters.add(new IFilter<String, String>() {
+			public String visit(String word) {
+				return word.toLowerCase();
+			}
+		});
+		filters.add(new IFilter<String, String>() {
+			public String visit(String word) {
+				return stopWords.contains(word) ? null : word;
+			}
+		});
+		filters.add(stemmer);
+		return new Analyzer(language, filters);
+	}
+
+	/**
+	 * Gets the name of this analyzer, so that stored terms can be recognized
+	 * as having been produced by a different analyzer.
+	 * 
+	 * @return the analyzer's name (e.g. the language's code)
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Splits a text up into words, i.e. all sequences of letters, digits and
+	 * underscores.
+	 * 
+	 * @param text
+	 *            the text to split up
+	 * @return all the words in the order they appear in
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> words = new ArrayList<String>();
+		for (String word : text.split("[^\\p{L}\\p{N}_]+"))
+			// skip splitting artifacts
+			if (!word.equals("")) {
+				words.add(word);
+			}
+		return words;
+	}
+
+	/**
+	 * Analyzes a text, keeping a place for each word that is dropped by one of
+	 * the filters (so that the positions of all words are retained).
+	 * 
+	 * @param text
+	 *            the text to analyze
+	 * @return the terms of all words in the order they appear in, where
+	 *         dropped words are represented by <code>null</code>
+	 */
+	public List<String> analyze(String text) {
+		List<String> terms = new ArrayList<String>();
+		for (String word : tokenize(text)) {
+			terms.add(this.term(word));
+		}
+		return terms;
+	}
+
+	/**
+	 * Analyzes a single word.
+	 * 
+	 * @param word
+	 *            the word to analyze
+	 * @return the word's term or <code>null</code>, if the word is to be
+	 *         dropped
+	 */
+	public String term(String word) {
+		for (IFilter<String, String> filter : this.filters) {
+			word = filter.visit(word);
+			if (word == null)
+				return null;
+		}
+		return word;
+	}
+
+	/**
+	 * Analyzes a set of search terms. Terms of the form "tag:
+	 * <em>tagname</em>" are left alone, as tags are never analyzed.
+	 * 
+	 * @param words
+	 *            the words to analyze
+	 * @return all the terms of the words which haven't been dropped
+	 */
+	public Set<String> terms(Collection<String> words) {
+		Set<String> terms = new HashSet<String>();
+		for (String word : words) {
+			String term = word.startsWith("tag:") ? word : this.term(word);
+			if (term != null) {
+				terms.add(term);
+			}
+		}
+		return terms;
+	}
+}
@@ -0,0 +1,51 @@
+package models.helpers;
+
+/**
+ * Reduces French words to their stems by removing plural and feminine endings
+ * (following Jacques Savoy's minimal stemmer), so that e.g. "chevaux" and
+ * "cheval" as well as "questionnée" and "questionner" are each reduced to
+ * the same stem.
+ * 
+ * Expects lowercase words. Never filters out a word.
+ */
+public class FrenchStemmer implements IFilter<String, String> {
+
+	/**
+	 * Stems a single word.
+	 * 
+	 * @param word
+	 *            the lowercase word to stem
+	 * @return the word's stem
+	 */
+	public String visit(String word) {
+		int length = word.length();
+		if (length < 6)
+			return word;
+		char[] stem = word.toCharArray();
+		if (stem[length - 1] == 'x') {
+			// chevaux -> cheval (but not for e.g. "feux")
+			if (stem[length - 3] == 'a' && stem[length - 2] == 'u'
+					&& stem[length - 4] != 'e') {
+				stem[length - 2] = 'l';
+			}
+			return new String(stem, 0, length - 1);
+		}
+		if (stem[length - 1] == 's') {
+			length--;
+		}
+		if (stem[length - 1] == 'r') {
+			length--;
+		}
+		if (stem[length - 1] == 'e') {
+			length--;
+		}
+		if (stem[length - 1] == 'é') {
+			length--;
+		}
+		if (stem[length - 1] == stem[length - 2]
+				&& Character.isLetter(stem[length - 1])) {
+			length--;
+		}
+		return new String(stem, 0, length);
+	}
+}
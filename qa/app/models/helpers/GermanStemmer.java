@@ -0,0 +1,102 @@
+package models.helpers;
+
+/**
+ * Reduces German words to their stems by removing the most common inflection
+ * suffixes (following Jacques Savoy's light stemmer), so that e.g. "Fragen"
+ * and "Frage" are both reduced to "frag". Umlauts and accents are removed as
+ * well.
+ * 
+ * Expects lowercase words. Never filters out a word.
+ */
+public class GermanStemmer implements IFilter<String, String> {
+
+	/**
+	 * Stems a single word.
+	 * 
+	 * @param word
+	 *            the lowercase word to stem
+	 * @return the word's stem
+	 */
+	public String visit(String word) {
+		StringBuilder stem = new StringBuilder(word.length());
+		for (char ch : word.toCharArray()) {
+			stem.append(normalize(ch));
+		}
+		int length = stem.length();
+
+		if (length > 5 && endsWith(stem, length, "ern")) {
+			length -= 3;
+		} else if (length > 4
+				&& (endsWith(stem, length, "em")
+						|| endsWith(stem, length, "en")
+						|| endsWith(stem, length, "er") || endsWith(stem,
+						length, "es"))) {
+			length -= 2;
+		} else if (length > 3 && stem.charAt(length - 1) == 'e') {
+			length--;
+		} else if (length > 3 && stem.charAt(length - 1) == 's'
+				&& isStEnding(stem.charAt(length - 2))) {
+			length--;
+		}
+
+		if (length > 5 && endsWith(stem, length, "est")) {
+			length -= 3;
+		} else if (length > 4
+				&& (endsWith(stem, length, "er") || endsWith(stem, length,
+						"en"))) {
+			length -= 2;
+		} else if (length > 4 && endsWith(stem, length, "st")
+				&& isStEnding(stem.charAt(length - 3))) {
+			length -= 2;
+		}
+		return stem.substring(0, length);
+	}
+
+	/**
+	 * @return the character without any umlaut or accent
+	 */
+	private static char normalize(char ch) {
+		switch (ch) {
+		case 'ä':
+		case 'à':
+		case 'á':
+		case 'â':
+			return 'a';
+		case 'ö':
+		case 'ò':
+		case 'ó':
+		case 'ô':
+			return 'o';
+		case 'ï':
+		case 'ì':
+		case 'í':
+		case 'î':
+			return 'i';
+		case 'ü':
+		case 'ù':
+		case 'ú':
+		case 'û':
+			return 'u';
+		default:
+			return ch;
+		}
+	}
+
+	/**
+	 * @return true, if the first <code>length</code> characters of the stem
+	 *         end with the given suffix
+	 */
+	private static boolean endsWith(StringBuilder stem, int length,
+			String suffix) {
+		return length >= suffix.length()
+				&& stem.substring(length - suffix.length(), length).equals(
+						suffix);
+	}
+
+	/**
+	 * @return true, if the character may precede an -s or -st ending
+	 */
+	private static boolean isStEnding(char ch) {
+		return "bdfghklmnt".indexOf(ch) != -1;
+	}
+}
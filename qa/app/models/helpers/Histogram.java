@@ -0,0 +1,109 @@
+package models.helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts how often each of a number of keys has been seen, keeping track of
+ * both the total and the highest count, so that the share of the most
+ * frequent key can be looked up in constant time while keys are being
+ * counted and uncounted.
+ * 
+ * @param <T>
+ *            the type of the keys (<code>null</code> being a valid key)
+ */
+public class Histogram<T> {
+
+	/** The count of each key seen (at least once). */
+	private final Map<T, Integer> counts = new HashMap<T, Integer>();
+
+	/** For each count the number of keys having that count. */
+	private final List<Integer> frequencies = new ArrayList<Integer>();
+
+	private int total = 0;
+	private int max = 0;
+
+	/**
+	 * Counts a key once more.
+	 * 
+	 * @param key
+	 *            the key to count
+	 */
+	public void increment(T key) {
+		int count = this.count(key);
+		this.counts.put(key, count + 1);
+		this.addFrequency(count, -1);
+		this.addFrequency(count + 1, 1);
+		this.max = Math.max(this.max, count + 1);
+		this.total++;
+	}
+
+	/**
+	 * Counts a key once less (if it has been counted at all).
+	 * 
+	 * @param key
+	 *            the key to uncount
+	 */
+	public void decrement(T key) {
+		int count = this.count(key);
+		if (count == 0)
+			return;
+		if (count == 1) {
+			this.counts.remove(key);
+		} else {
+			this.counts.put(key, count - 1);
+		}
+		this.addFrequency(count, -1);
+		this.addFrequency(count - 1, 1);
+		// no other key can have a count between count - 1 and count
+		if (count == this.max && this.frequencies.get(count) == 0) {
+			this.max--;
+		}
+		this.total--;
+	}
+
+	/**
+	 * @param key
+	 *            a key
+	 * @return how often the key has been counted
+	 */
+	public int count(T key) {
+		Integer count = this.counts.get(key);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * @return the sum of the counts of all keys
+	 */
+	public int total() {
+		return this.total;
+	}
+
+	/**
+	 * @return the highest count of any key (or 0, if nothing's been counted)
+	 */
+	public int max() {
+		return this.max;
+	}
+
+	/**
+	 * Forgets all the counts.
+	 */
+	public void clear() {
+		this.counts.clear();
+		this.frequencies.clear();
+		this.total = 0;
+		this.max = 0;
+	}
+
+	private void addFrequency(int count, int delta) {
+		if (count == 0)
+			return;
+		while (this.frequencies.size() <= count) {
+			this.frequencies.add(0);
+		}
+		this.frequencies.set(count, this.frequencies.get(count) + delta);
+	}
+}
@@ -0,0 +1,23 @@
+package models.helpers;
+
+/**
+ * Interface for an object aggregating other objects, so that these child
+ * objects can tell the aggregating parent to update any state it derives from
+ * the child (such as search indices) after the child has changed.
+ * 
+ * @param <T>
+ *            the type of the child object
+ */
+public interface IChangeListener<T> {
+
+	/**
+	 * Tells an aggregating object that the passed in object has changed.
+	 * 
+	 * @param object
+	 *            the object that has changed
+	 * @param cause
+	 *            additional information about the change (e.g. the answer
+	 *            that has been added or removed) or <code>null</code>
+	 */
+	public void changed(T object, Object cause);
+}
@@ -1,16 +1,49 @@
 package models.helpers;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * A helper class for sorting/filtering <code>Iterable</code>s.
+ * 
+ * Large collections can optionally be processed in parallel (see
+ * <code>setParallel</code>), in which case all the filters used must be
+ * safe to be called from several threads at once.
  */
 public class Mapper {
+	/** Whether large collections are to be processed in parallel. */
+	private static boolean parallel = false;
+
+	/** The minimum size of a collection to be processed in parallel. */
+	private static int parallelThreshold = 10000;
+
+	/** The pool of worker threads for parallel processing. */
+	private static ForkJoinPool pool;
+
+	/**
+	 * Compares map entries by their values and - for identical values - by
+	 * their keys (if they are comparable). The raw comparisons are safe, as
+	 * only the entries produced by a single filter are ever compared.
+	 */
+	@SuppressWarnings("unchecked")
+	private static final Comparator<Map.Entry> byValue = new Comparator<Map.Entry>() {
+		public int compare(Map.Entry e1, Map.Entry e2) {
+			int diff = ((Comparable) e1.getValue()).compareTo(e2.getValue());
+			if (diff == 0 && e1.getKey() instanceof Comparable)
+				return ((Comparable) e1.getKey()).compareTo(e2.getKey());
+			return diff;
+		}
+	};
+
 	/**
 	 * Return a <code>Map</code>'s key sorted in order of the corresponding
 	 * values (which must be Comparable).
@@ -18,19 +51,19 @@ public class Mapper {
 	 * Code adapted from a forum post retrieved 2010-11-01 from
 	 * http://www.programmersheaven.com/download/49349/download.aspx
 	 * 
+	 * Keys with identical values are sorted by their natural order (if they
+	 * have one), so that the sort order is stable even across pages.
+	 * 
 	 * @param map
 	 *            the map whose keys are to be sorted
 	 * @return the sorted list of keys
 	 */
 	public static <T> List<T> sortByValue(Map<T, ? extends Comparable> map) {
-		List<Map.Entry> list = new ArrayList(map.entrySet());
-		Collections.sort(list, new Comparator<Map.Entry>() {
-			public int compare(Map.Entry e1, Map.Entry e2) {
-				return ((Comparable) e1.getValue()).compareTo(e2.getValue());
-			}
-		});
-		List<T> result = new ArrayList();
-		for (Map.Entry<T, Comparable> entry : list) {
+		List<Map.Entry<T, ?>> list = new ArrayList<Map.Entry<T, ?>>(map
+				.entrySet());
+		Collections.sort(list, byValue);
+		List<T> result = new ArrayList<T>();
+		for (Map.Entry<T, ?> entry : list) {
 			result.add(entry.getKey());
 		}
 		return result;
@@ -47,7 +80,17 @@ public class Mapper {
 	 */
 	public static <T> List<T> sort(Iterable<T> iterable,
 			IFilter<T, ? extends Comparable> filter) {
-		Map<T, Comparable> map = new HashMap();
+		if (isParallel(iterable)) {
+			List<? extends Map.Entry<T, ?>> list = visitInParallel(
+					(Collection<T>) iterable, filter);
+			Collections.sort(list, byValue);
+			List<T> result = new ArrayList<T>(list.size());
+			for (Map.Entry<T, ?> entry : list) {
+				result.add(entry.getKey());
+			}
+			return result;
+		}
+		Map<T, Comparable> map = new HashMap<T, Comparable>();
 		for (T object : iterable) {
 			Comparable value = filter.visit(object);
 			if (value != null) {
@@ -57,6 +100,72 @@ public class Mapper {
 		return sortByValue(map);
 	}
 
+	/**
+	 * Get the first <code>k</code> objects of an <code>Iterable</code> sorted
+	 * according to a sorting <code>Filter</code>, i.e. the same as the first
+	 * <code>k</code> elements of <code>sort(iterable, filter)</code>. Only
+	 * <code>k</code> objects are kept at any time in a bounded heap, so that
+	 * selecting a few objects out of many costs O(n log k) instead of O(n log
+	 * n).
+	 * 
+	 * @param iterable
+	 *            the iterable whose values are to be sorted.
+	 * @param filter
+	 *            the sorting filter to be used for generating sort keys
+	 * @param k
+	 *            the maximum number of objects to return
+	 * @return the sorted list of at most <code>k</code> objects
+	 */
+	public static <T> List<T> top(Iterable<T> iterable,
+			IFilter<T, ? extends Comparable> filter, int k) {
+		if (k <= 0)
+			return new ArrayList<T>();
+		// the root of this heap is the worst of the best k objects seen so far
+		PriorityQueue<Map.Entry<T, ?>> heap = new PriorityQueue<Map.Entry<T, ?>>(
+				11, Collections.reverseOrder(byValue));
+		if (isParallel(iterable)) {
+			for (Map.Entry<T, ?> entry : visitInParallel(
+					(Collection<T>) iterable, filter)) {
+				offer(heap, entry, k);
+			}
+		} else {
+			for (T object : iterable) {
+				Comparable value = filter.visit(object);
+				if (value != null) {
+					offer(heap, new AbstractMap.SimpleEntry<T, Comparable>(
+							object, value), k);
+				}
+			}
+		}
+		List<T> result = new ArrayList<T>(heap.size());
+		while (!heap.isEmpty()) {
+			result.add(heap.poll().getKey());
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * Adds an entry to a bounded heap, if it's either not yet full or the
+	 * entry is better than the currently worst one.
+	 * 
+	 * @param heap
+	 *            the heap with the worst entry at its root
+	 * @param entry
+	 *            the entry to add
+	 * @param k
+	 *            the maximum size of the heap
+	 */
+	private static <T> void offer(PriorityQueue<Map.Entry<T, ?>> heap,
+			Map.Entry<T, ?> entry, int k) {
+		if (heap.size() < k) {
+			heap.add(entry);
+		} else if (byValue.compare(entry, heap.peek()) < 0) {
+			heap.poll();
+			heap.add(entry);
+		}
+	}
+
 	/**
 	 * Filter objects out of an <code>Iterable</code>.
 	 * 
@@ -68,7 +177,15 @@ public class Mapper {
 	 */
 	public static <T> List<T> filter(Iterable<T> iterable,
 			IFilter<T, Boolean> filter) {
-		List<T> result = new ArrayList();
+		List<T> result = new ArrayList<T>();
+		if (isParallel(iterable)) {
+			for (Map.Entry<T, Boolean> entry : visitInParallel(
+					(Collection<T>) iterable, filter))
+				if (entry.getValue()) {
+					result.add(entry.getKey());
+				}
+			return result;
+		}
 		for (T object : iterable) {
 			if (filter.visit(object)) {
 				result.add(object);
@@ -76,4 +193,130 @@ public class Mapper {
 		}
 		return result;
 	}
+
+	/**
+	 * Sum up the values calculated by a <code>Filter</code> for all objects of
+	 * an <code>Iterable</code> (e.g. for counting).
+	 * 
+	 * @param iterable
+	 *            the iterable to sum up
+	 * @param filter
+	 *            the filter calculating the value of each object (or
+	 *            <code>null</code> for objects not to be counted)
+	 * @return the sum of all values
+	 */
+	public static <T> int sum(Iterable<T> iterable,
+			IFilter<T, Integer> filter) {
+		int sum = 0;
+		if (isParallel(iterable)) {
+			for (Map.Entry<T, Integer> entry : visitInParallel(
+					(Collection<T>) iterable, filter)) {
+				sum += entry.getValue();
+			}
+			return sum;
+		}
+		for (T object : iterable) {
+			Integer value = filter.visit(object);
+			if (value != null) {
+				sum += value;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Configures the parallel processing of large collections. Collections
+	 * below the threshold size are always processed sequentially, as
+	 * splitting them up wouldn't be worth it.
+	 * 
+	 * @param enabled
+	 *            whether to process large collections in parallel at all
+	 * @param threshold
+	 *            the minimum size of a collection to be processed in parallel
+	 */
+	public static synchronized void setParallel(boolean enabled, int threshold) {
+		if (enabled && pool == null) {
+			pool = new ForkJoinPool();
+		}
+		parallel = enabled;
+		parallelThreshold = threshold;
+	}
+
+	/**
+	 * Checks whether an <code>Iterable</code> should be processed in parallel.
+	 * 
+	 * @param iterable
+	 *            the iterable to check
+	 * @return true, if it's a large enough collection to split up
+	 */
+	private static boolean isParallel(Iterable iterable) {
+		return parallel && iterable instanceof Collection
+				&& ((Collection) iterable).size() >= parallelThreshold;
+	}
+
+	/**
+	 * Visits all the objects of a collection in parallel, splitting the
+	 * collection into one part per worker thread (and a few more for balancing
+	 * the load).
+	 * 
+	 * @param collection
+	 *            the collection to visit
+	 * @param filter
+	 *            the filter to visit the objects with
+	 * @return all objects with their non-<code>null</code> values in the
+	 *         collection's iteration order
+	 */
+	private static <T, V> List<Map.Entry<T, V>> visitInParallel(
+			Collection<T> collection, IFilter<T, V> filter) {
+		List<T> objects = new ArrayList<T>(collection);
+		int partSize = Math.max(1, objects.size() / pool.getParallelism() / 4);
+		return pool.invoke(new VisitTask<T, V>(objects, 0, objects.size(),
+				partSize, filter));
+	}
+
+	/**
+	 * A task visiting a range of objects, splitting it up into two halves
+	 * (which are visited in parallel) until it is small enough.
+	 */
+	private static class VisitTask<T, V> extends
+			RecursiveTask<List<Map.Entry<T, V>>> {
+		private final List<T> objects;
+		private final int from, to, partSize;
+		private final IFilter<T, V> filter;
+
+		private VisitTask(List<T> objects, int from, int to, int partSize,
+				IFilter<T, V> filter) {
+			this.objects = objects;
+			this.from = from;
+			this.to = to;
+			this.partSize = partSize;
+			this.filter = filter;
+		}
+
+		@Override
+		protected List<Map.Entry<T, V>> compute() {
+			if (this.to - this.from <= this.partSize) {
+				List<Map.Entry<T, V>> result = new ArrayList<Map.Entry<T, V>>();
+				for (int i = this.from; i < this.to; i++) {
+					T object = this.objects.get(i);
+					V value = this.filter.visit(object);
+					if (value != null) {
+						result.add(new AbstractMap.SimpleEntry<T, V>(object,
+								value));
+					}
+				}
+				return result;
+			}
+
+			int middle = (this.from + this.to) / 2;
+			VisitTask<T, V> left = new VisitTask<T, V>(this.objects,
+					this.from, middle, this.partSize, this.filter);
+			left.fork();
+			List<Map.Entry<T, V>> right = new VisitTask<T, V>(this.objects,
+					middle, this.to, this.partSize, this.filter).compute();
+			List<Map.Entry<T, V>> result = left.join();
+			result.addAll(right);
+			return result;
+		}
+	}
 }
@@ -0,0 +1,399 @@
+package models.helpers;
+
+/**
+ * Reduces English words to their stems using Martin Porter's algorithm (see
+ * http://tartarus.org/~martin/PorterStemmer/), so that e.g. "compile",
+ * "compiling" and "compiled" are all reduced to "compil". The stems aren't
+ * necessarily words themselves.
+ * 
+ * Expects lowercase words. Never filters out a word. As the word being stemmed
+ * is kept in fields, an instance must only be used by one thread at a time.
+ */
+public class PorterStemmer implements IFilter<String, String> {
+
+	/** The word being stemmed (with some room for growing suffixes). */
+	private char[] b;
+
+	/** The offset of the last character of the current stem. */
+	private int k;
+
+	/** The offset of the last character before the suffix being looked at. */
+	private int j;
+
+	/**
+	 * Stems a single word.
+	 * 
+	 * @param word
+	 *            the lowercase word to stem
+	 * @return the word's stem
+	 */
+	public String visit(String word) {
+		if (word.length() <= 2)
+			return word;
+		this.b = new char[word.length() + 2];
+		word.getChars(0, word.length(), this.b, 0);
+		this.k = word.length() - 1;
+		this.step1();
+		this.step2();
+		this.step3();
+		this.step4();
+		this.step5();
+		this.step6();
+		return new String(this.b, 0, this.k + 1);
+	}
+
+	/**
+	 * @return true, if the character at <code>i</code> is a consonant
+	 */
+	private boolean cons(int i) {
+		switch (this.b[i]) {
+		case 'a':
+		case 'e':
+		case 'i':
+		case 'o':
+		case 'u':
+			return false;
+		case 'y':
+			return i == 0 ? true : !this.cons(i - 1);
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Measures the number of consonant sequences between the start of the
+	 * word and <code>j</code>, i.e. <em>m</em> in [C](VC)<sup>m</sup>[V].
+	 */
+	private int m() {
+		int n = 0;
+		int i = 0;
+		while (true) {
+			if (i > this.j)
+				return n;
+			if (!this.cons(i)) {
+				break;
+			}
+			i++;
+		}
+		i++;
+		while (true) {
+			while (true) {
+				if (i > this.j)
+					return n;
+				if (this.cons(i)) {
+					break;
+				}
+				i++;
+			}
+			i++;
+			n++;
+			while (true) {
+				if (i > this.j)
+					return n;
+				if (!this.cons(i)) {
+					break;
+				}
+				i++;
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * @return true, if there's a vowel between the start and <code>j</code>
+	 */
+	private boolean vowelInStem() {
+		for (int i = 0; i <= this.j; i++)
+			if (!this.cons(i))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return true, if the characters at <code>i - 1</code> and <code>i</code>
+	 *         are the same consonant
+	 */
+	private boolean doubleC(int i) {
+		if (i < 1 || this.b[i] != this.b[i - 1])
+			return false;
+		return this.cons(i);
+	}
+
+	/**
+	 * @return true, if the characters at <code>i - 2</code> to <code>i</code>
+	 *         are consonant - vowel - consonant and the last consonant isn't
+	 *         w, x or y (as in e.g. "hop" but not in "snow")
+	 */
+	private boolean cvc(int i) {
+		if (i < 2 || !this.cons(i) || this.cons(i - 1) || !this.cons(i - 2))
+			return false;
+		char ch = this.b[i];
+		return ch != 'w' && ch != 'x' && ch != 'y';
+	}
+
+	/**
+	 * Checks whether the current stem ends with a suffix and if so, sets
+	 * <code>j</code> to the last character before it.
+	 */
+	private boolean ends(String suffix) {
+		int length = suffix.length();
+		int offset = this.k - length + 1;
+		if (offset < 0)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (this.b[offset + i] != suffix.charAt(i))
+				return false;
+		this.j = this.k - length;
+		return true;
+	}
+
+	/**
+	 * Replaces everything after <code>j</code> with a new suffix.
+	 */
+	private void setTo(String suffix) {
+		int length = suffix.length();
+		int offset = this.j + 1;
+		for (int i = 0; i < length; i++) {
+			this.b[offset + i] = suffix.charAt(i);
+		}
+		this.k = this.j + length;
+	}
+
+	/**
+	 * Replaces the suffix after <code>j</code>, if the remaining stem is long
+	 * enough.
+	 */
+	private void replace(String suffix) {
+		if (this.m() > 0) {
+			this.setTo(suffix);
+		}
+	}
+
+	/**
+	 * Removes plurals and -ed or -ing (e.g. "caresses" to "caress", "ponies"
+	 * to "poni", "meetings" to "meet").
+	 */
+	private void step1() {
+		if (this.b[this.k] == 's') {
+			if (this.ends("sses")) {
+				this.k -= 2;
+			} else if (this.ends("ies")) {
+				this.setTo("i");
+			} else if (this.b[this.k - 1] != 's') {
+				this.k--;
+			}
+		}
+		if (this.ends("eed")) {
+			if (this.m() > 0) {
+				this.k--;
+			}
+		} else if ((this.ends("ed") || this.ends("ing")) && this.vowelInStem()) {
+			this.k = this.j;
+			if (this.ends("at")) {
+				this.setTo("ate");
+			} else if (this.ends("bl")) {
+				this.setTo("ble");
+			} else if (this.ends("iz")) {
+				this.setTo("ize");
+			} else if (this.doubleC(this.k)) {
+				this.k--;
+				char ch = this.b[this.k];
+				if (ch == 'l' || ch == 's' || ch == 'z') {
+					this.k++;
+				}
+			} else if (this.m() == 1 && this.cvc(this.k)) {
+				this.setTo("e");
+			}
+		}
+	}
+
+	/**
+	 * Turns a terminal y into an i, if there's another vowel in the stem.
+	 */
+	private void step2() {
+		if (this.ends("y") && this.vowelInStem()) {
+			this.b[this.k] = 'i';
+		}
+	}
+
+	/**
+	 * Maps double suffixes to single ones (e.g. -ization to -ize).
+	 */
+	private void step3() {
+		if (this.k == 0)
+			return;
+		switch (this.b[this.k - 1]) {
+		case 'a':
+			if (this.ends("ational")) {
+				this.replace("ate");
+			} else if (this.ends("tional")) {
+				this.replace("tion");
+			}
+			break;
+		case 'c':
+			if (this.ends("enci")) {
+				this.replace("ence");
+			} else if (this.ends("anci")) {
+				this.replace("ance");
+			}
+			break;
+		case 'e':
+			if (this.ends("izer")) {
+				this.replace("ize");
+			}
+			break;
+		case 'l':
+			if (this.ends("bli")) {
+				this.replace("ble");
+			} else if (this.ends("alli")) {
+				this.replace("al");
+			} else if (this.ends("entli")) {
+				this.replace("ent");
+			} else if (this.ends("eli")) {
+				this.replace("e");
+			} else if (this.ends("ousli")) {
+				this.replace("ous");
+			}
+			break;
+		case 'o':
+			if (this.ends("ization")) {
+				this.replace("ize");
+			} else if (this.ends("ation")) {
+				this.replace("ate");
+			} else if (this.ends("ator")) {
+				this.replace("ate");
+			}
+			break;
+		case 's':
+			if (this.ends("alism")) {
+				this.replace("al");
+			} else if (this.ends("iveness")) {
+				this.replace("ive");
+			} else if (this.ends("fulness")) {
+				this.replace("ful");
+			} else if (this.ends("ousness")) {
+				this.replace("ous");
+			}
+			break;
+		case 't':
+			if (this.ends("aliti")) {
+				this.replace("al");
+			} else if (this.ends("iviti")) {
+				this.replace("ive");
+			} else if (this.ends("biliti")) {
+				this.replace("ble");
+			}
+			break;
+		case 'g':
+			if (this.ends("logi")) {
+				this.replace("log");
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Deals with -ic-, -full, -ness etc.
+	 */
+	private void step4() {
+		switch (this.b[this.k]) {
+		case 'e':
+			if (this.ends("icate")) {
+				this.replace("ic");
+			} else if (this.ends("ative")) {
+				this.replace("");
+			} else if (this.ends("alize")) {
+				this.replace("al");
+			}
+			break;
+		case 'i':
+			if (this.ends("iciti")) {
+				this.replace("ic");
+			}
+			break;
+		case 'l':
+			if (this.ends("ical")) {
+				this.replace("ic");
+			} else if (this.ends("ful")) {
+				this.replace("");
+			}
+			break;
+		case 's':
+			if (this.ends("ness")) {
+				this.replace("");
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Removes -ant, -ence etc. from long enough stems.
+	 */
+	private void step5() {
+		if (this.k == 0)
+			return;
+		boolean found;
+		switch (this.b[this.k - 1]) {
+		case 'a':
+			found = this.ends("al");
+			break;
+		case 'c':
+			found = this.ends("ance") || this.ends("ence");
+			break;
+		case 'e':
+			found = this.ends("er");
+			break;
+		case 'i':
+			found = this.ends("ic");
+			break;
+		case 'l':
+			found = this.ends("able") || this.ends("ible");
+			break;
+		case 'n':
+			found = this.ends("ant") || this.ends("ement")
+					|| this.ends("ment") || this.ends("ent");
+			break;
+		case 'o':
+			found = this.ends("ion") && this.j >= 0
+					&& (this.b[this.j] == 's' || this.b[this.j] == 't')
+					|| this.ends("ou");
+			break;
+		case 's':
+			found = this.ends("ism");
+			break;
+		case 't':
+			found = this.ends("ate") || this.ends("iti");
+			break;
+		case 'u':
+			found = this.ends("ous");
+			break;
+		case 'v':
+			found = this.ends("ive");
+			break;
+		case 'z':
+			found = this.ends("ize");
+			break;
+		default:
+			found = false;
+		}
+		if (found && this.m() > 1) {
+			this.k = this.j;
+		}
+	}
+
+	/**
+	 * Removes a final -e and turns a final -ll into -l in long enough stems.
+	 */
+	private void step6() {
+		this.j = this.k;
+		if (this.b[this.k] == 'e') {
+			int a = this.m();
+			if (a > 1 || a == 1 && !this.cvc(this.k - 1)) {
+				this.k--;
+			}
+		}
+		if (this.b[this.k] == 'l' && this.doubleC(this.k) && this.m() > 1) {
+			this.k--;
+		}
+	}
+}
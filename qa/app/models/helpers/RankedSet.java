@@ -0,0 +1,208 @@
+package models.helpers;
+
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * A sorted set which can also look up its elements by rank, i.e. by their
+ * position in the sort order. Adding, removing and looking up an element by
+ * rank all cost O(log n) on average, so that percentiles and top lists of
+ * frequently changing values don't require sorting them again and again.
+ * 
+ * The set is implemented as a treap whose nodes know the size of their
+ * subtrees. Elements which compare as equal are considered to be the same
+ * element, and elements mustn't change their sort order while they're in the
+ * set (remove them before they change and add them again afterwards).
+ * 
+ * @param <T>
+ *            the type of the elements
+ */
+public class RankedSet<T> {
+
+	/** A node of the treap. */
+	private static class Node<T> {
+		private final T value;
+		private final int priority;
+		private Node<T> left;
+		private Node<T> right;
+		private int size = 1;
+
+		private Node(T value, int priority) {
+			this.value = value;
+			this.priority = priority;
+		}
+	}
+
+	/** The two subtrees a subtree is split into (see <code>split</code>). */
+	private static class Split<T> {
+		private Node<T> smaller;
+		private Node<T> others;
+	}
+
+	private final Comparator<? super T> comparator;
+	private final Random random = new Random(0);
+	private Node<T> root;
+
+	/**
+	 * Creates an empty set.
+	 * 
+	 * @param comparator
+	 *            the sort order of the elements
+	 */
+	public RankedSet(Comparator<? super T> comparator) {
+		this.comparator = comparator;
+	}
+
+	/**
+	 * @return the number of elements in the set
+	 */
+	public int size() {
+		return size(this.root);
+	}
+
+	/**
+	 * @return true, if the set contains no elements
+	 */
+	public boolean isEmpty() {
+		return this.root == null;
+	}
+
+	/**
+	 * Adds an element to the set (unless an equal element is already in it).
+	 * 
+	 * @param value
+	 *            the element to add
+	 */
+	public void add(T value) {
+		if (this.contains(value))
+			return;
+		Split<T> parts = this.split(this.root, value);
+		this.root = merge(merge(parts.smaller, new Node<T>(value, this.random
+				.nextInt())), parts.others);
+	}
+
+	/**
+	 * Removes an element from the set (if it's in it).
+	 * 
+	 * @param value
+	 *            the element to remove
+	 */
+	public void remove(T value) {
+		this.root = this.remove(this.root, value);
+	}
+
+	/**
+	 * Checks whether an element is in the set.
+	 * 
+	 * @param value
+	 *            the element to look for
+	 * @return true, if an equal element is in the set
+	 */
+	public boolean contains(T value) {
+		Node<T> node = this.root;
+		while (node != null) {
+			int cmp = this.comparator.compare(value, node.value);
+			if (cmp == 0)
+				return true;
+			node = cmp < 0 ? node.left : node.right;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets an element by its rank.
+	 * 
+	 * @param rank
+	 *            the position of the element in the sort order (starting at 0
+	 *            for the smallest element)
+	 * @return the element at that position
+	 * @throws IndexOutOfBoundsException
+	 *             if the rank is negative or not smaller than the set's size
+	 */
+	public T get(int rank) {
+		if (rank < 0 || rank >= this.size())
+			throw new IndexOutOfBoundsException("rank " + rank + " of "
+					+ this.size());
+		Node<T> node = this.root;
+		while (true) {
+			int left = size(node.left);
+			if (rank == left)
+				return node.value;
+			if (rank < left) {
+				node = node.left;
+			} else {
+				rank -= left + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Drops all the elements.
+	 */
+	public void clear() {
+		this.root = null;
+	}
+
+	/**
+	 * Splits a subtree into the elements smaller than a given value and all
+	 * the others.
+	 */
+	private Split<T> split(Node<T> node, T value) {
+		Split<T> parts = new Split<T>();
+		if (node == null)
+			return parts;
+		if (this.comparator.compare(node.value, value) < 0) {
+			Split<T> right = this.split(node.right, value);
+			node.right = right.smaller;
+			parts.smaller = update(node);
+			parts.others = right.others;
+		} else {
+			Split<T> left = this.split(node.left, value);
+			node.left = left.others;
+			parts.smaller = left.smaller;
+			parts.others = update(node);
+		}
+		return parts;
+	}
+
+	private Node<T> remove(Node<T> node, T value) {
+		if (node == null)
+			return null;
+		int cmp = this.comparator.compare(value, node.value);
+		if (cmp == 0)
+			return merge(node.left, node.right);
+		if (cmp < 0) {
+			node.left = this.remove(node.left, value);
+		} else {
+			node.right = this.remove(node.right, value);
+		}
+		return update(node);
+	}
+
+	/**
+	 * Merges two subtrees, all of whose elements in <code>left</code> are
+	 * smaller than all of the elements in <code>right</code>.
+	 */
+	private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			return update(left);
+		}
+		right.left = merge(left, right.left);
+		return update(right);
+	}
+
+	private static <T> Node<T> update(Node<T> node) {
+		node.size = 1 + size(node.left) + size(node.right);
+		return node;
+	}
+
+	private static int size(Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+}
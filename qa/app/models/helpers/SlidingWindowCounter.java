@@ -0,0 +1,110 @@
+package models.helpers;
+
+import java.util.Date;
+
+/**
+ * Counts events over a sliding window of time, e.g. the number of posts of a
+ * user within the last hour. The window is split into a fixed number of
+ * buckets (one per minute by default) kept in a ring buffer, so that both
+ * counting an event and summing up the window cost constant time and memory
+ * no matter how many events have ever been counted.
+ * 
+ * Events are counted at the granularity of a bucket: an event drops out of
+ * the window as a whole bucket once that bucket is older than the window.
+ */
+public class SlidingWindowCounter {
+
+	/** The length of a bucket in milliseconds. */
+	private final long bucketLength;
+
+	/** The number of events counted in each bucket. */
+	private final int[] counts;
+
+	/** For each bucket the period (in bucket lengths since 1970) it counts. */
+	private final long[] periods;
+
+	/**
+	 * Creates a counter for the last hour with one bucket per minute.
+	 */
+	public SlidingWindowCounter() {
+		this(60, 60 * 1000);
+	}
+
+	/**
+	 * Creates a counter for a window of <code>buckets * bucketLength</code>
+	 * milliseconds.
+	 * 
+	 * @param buckets
+	 *            the number of buckets the window is split into
+	 * @param bucketLength
+	 *            the length of a bucket in milliseconds
+	 */
+	public SlidingWindowCounter(int buckets, long bucketLength) {
+		this.bucketLength = bucketLength;
+		this.counts = new int[buckets];
+		this.periods = new long[buckets];
+		this.clear();
+	}
+
+	/**
+	 * Counts an event (or, if <code>delta</code> is negative, forgets
+	 * previously counted ones). Events which happened before the oldest
+	 * period still kept are ignored.
+	 * 
+	 * @param time
+	 *            the time the event happened at
+	 * @param delta
+	 *            the number of events to add
+	 */
+	public void add(Date time, int delta) {
+		long period = this.periodOf(time);
+		int bucket = this.bucketOf(period);
+		if (this.periods[bucket] != period) {
+			if (delta < 0 || this.periods[bucket] > period)
+				return;
+			this.periods[bucket] = period;
+			this.counts[bucket] = 0;
+		}
+		this.counts[bucket] = Math.max(0, this.counts[bucket] + delta);
+	}
+
+	/**
+	 * @param now
+	 *            the end of the window
+	 * @return the number of events counted in the window ending at
+	 *         <code>now</code>
+	 */
+	public int count(Date now) {
+		long current = this.periodOf(now);
+		int sum = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			long age = current - this.periods[i];
+			if (age >= 0 && age < this.counts.length) {
+				sum += this.counts[i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Forgets all the counted events.
+	 */
+	public void clear() {
+		for (int i = 0; i < this.counts.length; i++) {
+			this.counts[i] = 0;
+			this.periods[i] = Long.MIN_VALUE;
+		}
+	}
+
+	private long periodOf(Date time) {
+		long ms = time.getTime();
+		// round down for times before 1970 as well
+		return ms >= 0 ? ms / this.bucketLength : (ms + 1) / this.bucketLength
+				- 1;
+	}
+
+	private int bucketOf(long period) {
+		int bucket = (int) (period % this.counts.length);
+		return bucket < 0 ? bucket + this.counts.length : bucket;
+	}
+}
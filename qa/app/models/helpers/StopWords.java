@@ -1,5 +1,6 @@
 package models.helpers;
 
+import java.util.Arrays;
 import java.util.HashSet;
 
 /**
@@ -56,6 +57,30 @@ public class StopWords {
 			"whom", "whose", "why", "will", "with", "within", "without",
 			"would", "yet", "you", "your", "yours", "yourself", "yourselves",
 			"the" };
+	private static HashSet<String> germanInstance;
+	private static String[] germanStarters = { "aber", "alle", "als", "also",
+			"am", "an", "auch", "auf", "aus", "bei", "bin", "bis", "bist",
+			"da", "damit", "dann", "das", "dass", "dein", "dem", "den", "denn",
+			"der", "des", "dich", "die", "dir", "doch", "du", "durch", "ein",
+			"eine", "einem", "einen", "einer", "eines", "er", "es", "euch",
+			"euer", "für", "hat", "hatte", "habe", "haben", "hier", "ich",
+			"ihr", "im", "in", "ist", "ja", "jede", "jeder", "kann", "kein",
+			"keine", "man", "mein", "mich", "mir", "mit", "muss", "nach",
+			"nein", "nicht", "noch", "nun", "nur", "ob", "oder", "ohne",
+			"sehr", "sein", "sich", "sie", "sind", "so", "soll", "über", "um",
+			"und", "uns", "unser", "unter", "vom", "von", "vor", "war",
+			"waren", "was", "weil", "wenn", "wer", "wie", "wieder", "wir",
+			"wird", "wo", "zu", "zum", "zur" };
+	private static HashSet<String> frenchInstance;
+	private static String[] frenchStarters = { "à", "au", "aux", "avec",
+			"c", "ce", "ces", "cette", "d", "dans", "de", "des", "du", "elle",
+			"elles", "en", "est", "et", "été", "être", "eu", "il", "ils", "j",
+			"je", "l", "la", "le", "les", "leur", "lui", "m", "ma", "mais",
+			"me", "même", "mes", "moi", "mon", "n", "ne", "ni", "nos",
+			"notre", "nous", "on", "ont", "ou", "où", "par", "pas", "pour",
+			"qu", "que", "qui", "s", "sa", "sans", "se", "ses", "si", "son",
+			"sont", "sur", "t", "ta", "te", "tes", "toi", "ton", "tu", "un",
+			"une", "vos", "votre", "vous", "y" };
 
 	public static HashSet<String> get() {
 		if (instance == null) {
@@ -66,4 +91,30 @@ public class StopWords {
 		}
 		return instance;
 	}
+
+	/**
+	 * Gets the stop words of a given language.
+	 * 
+	 * @param language
+	 *            the language's code ("en", "de" or "fr")
+	 * @return the language's stop words (the English ones for any unknown
+	 *         language)
+	 */
+	public static HashSet<String> get(String language) {
+		if (language.equals("de")) {
+			if (germanInstance == null) {
+				germanInstance = new HashSet<String>(Arrays
+						.asList(germanStarters));
+			}
+			return germanInstance;
+		}
+		if (language.equals("fr")) {
+			if (frenchInstance == null) {
+				frenchInstance = new HashSet<String>(Arrays
+						.asList(frenchStarters));
+			}
+			return frenchInstance;
+		}
+		return get();
+	}
 }
@@ -163,7 +163,21 @@ public class Tools {
 	}
 
 	public static int determineMaximumIndex(List entries, int entriesPerPage) {
-		return (entries.size() - 1) / entriesPerPage;
+		return determineMaximumIndex(entries.size(), entriesPerPage);
+	}
+
+	/**
+	 * Determines the index of the last page for paginating a certain number of
+	 * entries.
+	 * 
+	 * @param entryCount
+	 *            the number of entries to paginate
+	 * @param entriesPerPage
+	 *            the amount of entries on one page
+	 * @return the index of the last page (0 for no entries at all)
+	 */
+	public static int determineMaximumIndex(int entryCount, int entriesPerPage) {
+		return (entryCount - 1) / entriesPerPage;
 	}
 
 	/**
@@ -215,4 +229,47 @@ public class Tools {
 
 		return new String(buffer);
 	}
+
+	/**
+	 * Calculates the Levenshtein distance between two strings (i.e. the
+	 * number of characters that have to be inserted, deleted or replaced in
+	 * order to turn one string into the other). In order to keep the cost
+	 * bounded, the calculation is aborted as soon as the distance is known to
+	 * exceed a given maximum.
+	 * 
+	 * @param a
+	 *            the first string
+	 * @param b
+	 *            the second string
+	 * @param max
+	 *            the maximum distance of interest
+	 * @return the distance between the two strings or <code>max + 1</code>, if
+	 *         it would be larger than <code>max</code>
+	 */
+	public static int editDistance(String a, String b, int max) {
+		if (Math.abs(a.length() - b.length()) > max)
+			return max + 1;
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int best = current[0];
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1,
+						previous[j - 1] + cost);
+				best = Math.min(best, current[j]);
+			}
+			// all further rows can only be larger than this one's minimum
+			if (best > max)
+				return max + 1;
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return Math.min(previous[b.length()], max + 1);
+	}
 }
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import models.Answer;
+import models.Question;
+import models.User;
+import models.database.IDatabase;
+import models.database.HotDatabase.HotDatabase;
+import models.database.importers.CorpusGenerator;
+import models.helpers.Analyzer;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A database filled with a given number of questions (along with their
+ * answers, comments, votes, tags and watchers), shared by all threads of a
+ * benchmark. The content is generated from a fixed seed (see
+ * {@link CorpusGenerator}), so that each run sees exactly the same data.
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+	/** The number of questions to generate. */
+	@Param( { "1000", "10000", "100000", "1000000" })
+	public int questions;
+
+	/** The filled database. */
+	public IDatabase db;
+
+	/**
+	 * Some of the words the content is made up of (as they would be typed,
+	 * without stop words).
+	 */
+	public List<String> words;
+
+	/**
+	 * The words of each sampled question's content (with at least two of
+	 * them), so that searches can combine words appearing together.
+	 */
+	public List<List<String>> contents;
+
+	/** A sample of the generated questions to run the benchmarks against. */
+	public List<Question> sample;
+
+	/** Some of the users who have answered the sampled questions. */
+	public List<User> answerers;
+
+	@Setup(Level.Trial)
+	public void fill() {
+		this.db = new HotDatabase();
+		new CorpusGenerator(42, Math.max(10, this.questions / 10),
+				this.questions, Math.max(100, this.questions / 100))
+				.generate(this.db);
+
+		Random random = new Random(42);
+		List<Question> all = this.db.questions().all();
+		Set<String> words = new TreeSet<String>();
+		Set<User> answerers = new LinkedHashSet<User>();
+		this.sample = new ArrayList<Question>();
+		this.contents = new ArrayList<List<String>>();
+		for (int i = 0; i < 100; i++) {
+			Question question = all.get(random.nextInt(all.size()));
+			this.sample.add(question);
+			List<String> content = getWords(question);
+			words.addAll(content);
+			if (content.size() >= 2) {
+				this.contents.add(content);
+			}
+			for (Answer answer : question.answers()) {
+				answerers.add(answer.owner());
+			}
+		}
+		this.words = new ArrayList<String>(words);
+		Collections.shuffle(this.words, random);
+		this.answerers = new ArrayList<User>(answerers);
+	}
+
+	/**
+	 * Gets the distinct words of a question's content, leaving out the stop
+	 * words (which are never searched for).
+	 */
+	private static List<String> getWords(Question question) {
+		Set<String> words = new LinkedHashSet<String>();
+		for (String word : Analyzer.tokenize(question.getContentText()
+				.toLowerCase()))
+			if (Analyzer.get().term(word) != null) {
+				words.add(word);
+			}
+		return new ArrayList<String>(words);
+	}
+
+	/**
+	 * Picks the <code>i</code>-th element of a sample (round robin).
+	 */
+	public static <T> T pick(List<T> sample, int i) {
+		return sample.get(i % sample.size());
+	}
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import models.helpers.Tools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast entries' Markdown content is rendered and sanitized for
+ * posts of different lengths.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarkdownBenchmark {
+
+	/** The number of paragraphs per post. */
+	@Param( { "1", "10", "100" })
+	public int paragraphs;
+
+	private String content;
+
+	@Setup
+	public void write() {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < this.paragraphs; i++) {
+			content.append("Some *emphasized* and **strong** text with a ")
+					.append("[link](http://www.example.org/").append(i)
+					.append(") and `code`.\n\n")
+					.append("* a list item\n* another <b>item</b>\n\n")
+					.append("    indented code\n\n");
+		}
+		this.content = content.toString();
+	}
+
+	@Benchmark
+	public String markdownToHtml() {
+		return Tools.markdownToHtml(this.content);
+	}
+}
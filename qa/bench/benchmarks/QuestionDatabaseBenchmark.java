@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Map;
+
+import models.Answer;
+import models.Question;
+import models.Tag;
+import models.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the question database's hot paths for all the
+ * corpus sizes (see {@link Corpus}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class QuestionDatabaseBenchmark {
+
+	/** The position in the samples, so that each call looks at other data. */
+	private int next;
+
+	@Benchmark
+	public List<Question> searchForCached(Corpus corpus) {
+		// the same search over and over again only hits the result cache
+		return corpus.db.questions().searchFor(corpus.words.get(0));
+	}
+
+	@Benchmark
+	public List<Question> searchFor(Corpus corpus) {
+		// two-word searches which hardly ever repeat within the cache's
+		// capacity (both words taken from the same question, so that they
+		// actually find something)
+		int i = this.next++;
+		List<String> words = Corpus.pick(corpus.contents, i);
+		int first = i % words.size();
+		int second = (first + 1 + i / 7 % (words.size() - 1)) % words.size();
+		return corpus.db.questions().searchFor(
+				words.get(first) + " " + words.get(second));
+	}
+
+	@Benchmark
+	public List<Question> findSimilar(Corpus corpus) {
+		return corpus.db.questions().findSimilar(
+				Corpus.pick(corpus.sample, this.next++));
+	}
+
+	@Benchmark
+	public List<Question> suggestQuestions(Corpus corpus) {
+		return corpus.db.questions().suggestQuestions(
+				Corpus.pick(corpus.answerers, this.next++));
+	}
+
+	@Benchmark
+	public Map<Tag, Map<User, Integer>> collectExpertiseStatistics(
+			Corpus corpus) {
+		return corpus.db.questions().collectExpertiseStatistics();
+	}
+
+	@Benchmark
+	public List<Answer> answers(Corpus corpus) {
+		return Corpus.pick(corpus.sample, this.next++).answers();
+	}
+}
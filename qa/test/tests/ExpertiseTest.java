@@ -165,4 +165,58 @@ public class ExpertiseTest extends MockedUnitTest {
 		assertFalse(this.questionDB.getExpertise(question.owner())
 				.contains(tag));
 	}
+
+	@Test
+	public void shouldUpdateExpertiseIncrementally() {
+		question.setTagString("incremental");
+		Answer answer = question.answer(john, "Answer");
+		for (int i = 0; i < 2; i++)
+			answer.voteUp(users.get(i));
+
+		Tag tag = this.tagDB.get("incremental");
+		assertTrue(this.questionDB.getExpertise(john).contains(tag));
+		assertEquals((int) this.questionDB.collectExpertiseStatistics()
+				.get(tag).get(john), 2);
+
+		answer.voteCancel(users.get(0));
+		assertEquals(this.questionDB.getExpertise(john).size(), 0);
+		question.setBestAnswer(answer);
+		assertTrue(this.questionDB.getExpertise(john).contains(tag));
+		assertEquals((int) this.questionDB.collectExpertiseStatistics()
+				.get(tag).get(john), 6);
+
+		question.setTagString("changed");
+		assertFalse(this.questionDB.getExpertise(john).contains(tag));
+		assertTrue(this.questionDB.getExpertise(john).contains(
+				this.tagDB.get("changed")));
+
+		answer.delete();
+		assertEquals(this.questionDB.getExpertise(john).size(), 0);
+		assertTrue(this.questionDB.collectExpertiseStatistics().isEmpty());
+	}
+
+	@Test
+	public void shouldListTopExperts() {
+		question.setTagString("top-experts");
+		for (int i = 10; i < 20; i++)
+			question.answer(users.get(i), "Answer " + i);
+		int k = 6;
+		for (Answer uanswer : question.answers()) {
+			for (int i = 0; i < k; i++)
+				uanswer.voteUp(users.get(i));
+			k--;
+		}
+		Answer answer = question.answer(john, "Answer");
+		question.setBestAnswer(answer);
+
+		Tag tag = this.tagDB.get("top-experts");
+		List<User> experts = this.questionDB.topExperts(tag, 3);
+		assertEquals(experts.size(), 3);
+		assertEquals(experts.get(0), users.get(10));
+		assertEquals(experts.get(1), john);
+		assertEquals(experts.get(2), users.get(11));
+		assertEquals(this.questionDB.topExperts(tag, 100).size(), 11);
+		assertTrue(this.questionDB.topExperts(this.tagDB.get("unknown"), 3)
+				.isEmpty());
+	}
 }
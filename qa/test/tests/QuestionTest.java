@@ -36,6 +36,18 @@ public class QuestionTest extends MockedUnitTest {
 				"<p>Why did the chicken cross the road?</p>");
 	}
 
+	@Test
+	public void shouldCacheWords() {
+		assertEquals(5, question.getWords().size());
+		assertTrue(question.getWords().contains("chicken"));
+		assertTrue(question.getWords().contains("jack"));
+		assertSame(question.getWords(), question.getWords());
+		assertEquals(1, (int) question.getWordCounts().get("road"));
+		question.anonymize();
+		assertEquals(4, question.getWords().size());
+		assertFalse(question.getWords().contains("jack"));
+	}
+
 	@Test
 	public void shouldHaveCorrectSummary() {
 		assertEquals(question.summary(), "Why did the chicken cross the road?");
@@ -1,15 +1,28 @@
 package tests;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import models.Answer;
 import models.Question;
+import models.SearchCache;
+import models.SearchCache.CachedSearch;
 import models.SearchFilter;
+import models.SearchIndex;
+import models.SearchQuery;
+import models.SearchResult;
+import models.SearchSegment;
 import models.User;
 import models.database.IQuestionDatabase;
 import models.database.HotDatabase.HotQuestionDatabase;
 import models.database.HotDatabase.HotTagDatabase;
+import models.helpers.Analyzer;
 import models.helpers.Mapper;
 
 import org.junit.Before;
@@ -144,4 +157,409 @@ public class SearchTest extends MockedUnitTest {
 		assertEquals(1, found.size());
 		assertTrue(found.contains(question));
 	}
+
+	@Test
+	public void shouldFindNewAnswers() {
+		assertTrue(this.questionDB.searchFor("fulltext").isEmpty());
+		Answer answer = fulltextNegative.answer(null, "Search my fulltext!");
+		List<Question> found = this.questionDB.searchFor("fulltext");
+		assertEquals(1, found.size());
+		assertTrue(found.contains(fulltextNegative));
+		answer.delete();
+		assertTrue(this.questionDB.searchFor("fulltext").isEmpty());
+	}
+
+	@Test
+	public void shouldFindChangedTags() {
+		assertTrue(this.questionDB.searchFor("tag:plop").contains(
+				taggedNegative));
+		taggedNegative.setTagString("plip");
+		assertTrue(this.questionDB.searchFor("tag:plop").isEmpty());
+		assertTrue(this.questionDB.searchFor("tag:plip").contains(
+				taggedNegative));
+	}
+
+	@Test
+	public void shouldntFindDeletedOrAnonymizedQuestions() {
+		assertEquals(2, this.questionDB.searchFor("jill").size());
+		fulltextNegative.anonymize();
+		assertEquals(1, this.questionDB.searchFor("jill").size());
+		fulltextPositive.delete();
+		assertTrue(this.questionDB.searchFor("jill").isEmpty());
+		assertTrue(this.questionDB.searchFor("relevant").contains(
+				taggedPositive));
+	}
+
+	@Test
+	public void shouldRankByRelevance() {
+		Question rare = this.questionDB.add(null,
+				"Penguins like ice. Penguins like fish. Penguins!");
+		Question often = this.questionDB.add(null,
+				"Penguins are mentioned here, but only in passing along with "
+						+ "walruses, seals, polar bears and some more animals.");
+		List<Question> found = this.questionDB.searchFor("penguins");
+		assertEquals(2, found.size());
+		assertEquals(rare, found.get(0));
+		assertEquals(often, found.get(1));
+		assertEquals(often, this.questionDB.searchFor("penguins walruses")
+				.get(0));
+	}
+
+	@Test
+	public void shouldPaginateSearchResults() {
+		for (int i = 0; i < 20; i++) {
+			this.questionDB.add(null, "Paging question number " + i);
+		}
+		List<Question> all = this.questionDB.searchFor("paging");
+		assertEquals(20, all.size());
+		SearchResult page = this.questionDB.searchFor("paging", 15, 15);
+		assertEquals(20, page.getTotal());
+		assertEquals(all.subList(15, 20), page.getQuestions());
+		assertEquals(all.subList(0, 15), this.questionDB.searchFor("paging",
+				0, 15).getQuestions());
+		assertTrue(this.questionDB.searchFor("paging", 30, 15).getQuestions()
+				.isEmpty());
+	}
+
+	@Test
+	public void shouldSearchForPrefixes() {
+		Question serialize = this.questionDB.add(null,
+				"How do I serialize objects?");
+		Question serialization = this.questionDB.add(new User("Jill"),
+				"Is Java serialization slow?");
+		List<Question> found = this.questionDB.searchFor("serializ*");
+		assertEquals(2, found.size());
+		assertTrue(found.contains(serialize));
+		assertTrue(found.contains(serialization));
+		found = this.questionDB.searchFor("serializ* jil*");
+		assertEquals(1, found.size());
+		assertTrue(found.contains(serialization));
+		assertTrue(this.questionDB.searchFor("serializ* relevant").isEmpty());
+		assertTrue(this.questionDB.searchFor("unknown*").isEmpty());
+	}
+
+	@Test
+	public void shouldCapPrefixExpansion() {
+		for (int i = 0; i < 2 * SearchIndex.MAX_PREFIX_EXPANSION; i++) {
+			this.questionDB.add(null, "Term x" + i);
+		}
+		assertEquals(SearchIndex.MAX_PREFIX_EXPANSION, this.questionDB
+				.searchFor("x*").size());
+	}
+
+	@Test
+	public void shouldSearchForPhrases() {
+		Question adjacent = this.questionDB.add(null,
+				"Why do I get a null pointer exception?");
+		Question apart = this.questionDB.add(null,
+				"This pointer stays null.");
+		Question stopWord = this.questionDB.add(null,
+				"Is it a pointer to null or a null to pointer?");
+		List<Question> found = this.questionDB.searchFor("pointer null");
+		assertEquals(3, found.size());
+		found = this.questionDB.searchFor("\"null pointer\"");
+		assertEquals(1, found.size());
+		assertTrue(found.contains(adjacent));
+		// stop words aren't indexed, so they match any word
+		found = this.questionDB.searchFor("\"pointer to null\"");
+		assertEquals(2, found.size());
+		assertTrue(found.contains(stopWord));
+		assertTrue(found.contains(apart));
+		assertTrue(this.questionDB.searchFor("\"null pointer\" stays")
+				.isEmpty());
+		apart.answer(null, "Unless you have a null pointer.");
+		found = this.questionDB.searchFor("\"null pointer\" stays");
+		assertEquals(1, found.size());
+		assertTrue(found.contains(apart));
+	}
+
+	@Test
+	public void shouldCorrectMisspelledTerms() {
+		Question serialize = this.questionDB.add(null,
+				"How do I serialize objects?");
+		assertTrue(this.questionDB.searchFor("serialise").contains(serialize));
+		assertTrue(this.questionDB.searchFor("serialiez objetcs").isEmpty());
+		assertTrue(this.questionDB.searchFor("serialiez objecs").contains(
+				serialize));
+		assertEquals(2, this.questionDB.searchFor("relevnt").size());
+		// correctly spelled terms aren't corrected
+		assertTrue(this.questionDB.searchFor("relevant serialize").isEmpty());
+		// short terms are never corrected
+		assertTrue(this.questionDB.searchFor("jil").isEmpty());
+	}
+
+	@Test
+	public void shouldNormalizeSearches() {
+		HotTagDatabase tagDB = new HotTagDatabase();
+		assertEquals(new SearchQuery("Foo bar", tagDB).getKey(),
+				new SearchQuery("bar  foo is FOO", tagDB).getKey());
+		assertEquals("bar foo* tag:baz", new SearchQuery("tag:baz foo* bar",
+				tagDB).getKey());
+		assertEquals("is", new SearchQuery("is", tagDB).getKey());
+		assertFalse(new SearchQuery("\"foo bar\"", tagDB).getKey().equals(
+				new SearchQuery("\"bar foo\"", tagDB).getKey()));
+	}
+
+	@Test
+	public void shouldNotCacheResultsComputedDuringChanges() {
+		SearchCache cache = new SearchCache(10);
+		CachedSearch cached = new CachedSearch(new ArrayList<Integer>(), 0,
+				null, 0, Arrays.asList("relev"), new HashSet<String>(),
+				new HashSet<String>());
+		long generation = cache.getGeneration();
+		cache.invalidate(Arrays.asList("relev"));
+		cache.put("relev ", cached, generation);
+		assertFalse(cache.contains("relev "));
+		cache.put("relev ", cached, cache.getGeneration());
+		assertTrue(cache.contains("relev "));
+
+		// searches which don't change anything don't cancel each other
+		generation = cache.getGeneration();
+		cache.invalidate(new HashSet<String>());
+		assertEquals(generation, cache.getGeneration());
+	}
+
+	@Test
+	public void shouldCacheSearchResults() {
+		assertFalse(this.questionDB.isCached("relevant"));
+		assertEquals(2, this.questionDB.searchFor("relevant").size());
+		assertTrue(this.questionDB.isCached("Relevant"));
+		assertTrue(this.questionDB.isCached("is relevant"));
+
+		// unrelated changes keep the results
+		this.questionDB.add(null, "Something else entirely.");
+		assertTrue(this.questionDB.isCached("relevant"));
+
+		// related changes drop the results
+		Question question = this.questionDB.add(null, "Also relevant.");
+		assertFalse(this.questionDB.isCached("relevant"));
+		assertEquals(3, this.questionDB.searchFor("relevant").size());
+		question.answer(null, "Still relevant.");
+		assertFalse(this.questionDB.isCached("relevant"));
+		assertEquals(3, this.questionDB.searchFor("relevant").size());
+		question.delete();
+		assertFalse(this.questionDB.isCached("relevant"));
+		assertEquals(2, this.questionDB.searchFor("relevant").size());
+
+		// prefix searches depend on all matching terms
+		assertTrue(this.questionDB.searchFor("relev* penguin").isEmpty());
+		this.questionDB.add(null, "Relevance of a penguin.");
+		assertEquals(1, this.questionDB.searchFor("relev* penguin").size());
+	}
+
+	@Test
+	public void shouldMatchWordForms() {
+		Question compiling = this.questionDB.add(null,
+				"Compiling takes forever.");
+		Question compiled = this.questionDB.add(null,
+				"I compiled it yesterday.");
+		List<Question> found = this.questionDB.searchFor("compile");
+		assertEquals(2, found.size());
+		assertTrue(found.contains(compiling));
+		assertTrue(found.contains(compiled));
+		assertEquals(found, this.questionDB.searchFor("COMPILES"));
+		assertTrue(this.questionDB.isCached("compiler"));
+	}
+
+	@Test
+	public void shouldCountTagFacets() {
+		for (int i = 0; i < 5; i++) {
+			Question question = this.questionDB.add(null, "Facets " + i);
+			question.setTagString(i < 3 ? "often rarely" : "often");
+		}
+		this.questionDB.add(null, "Facets untagged");
+		SearchResult result = this.questionDB.searchFor("facets", 0, 2, 10);
+		assertEquals(2, result.getQuestions().size());
+		assertEquals(6, result.getTotal());
+		assertEquals(2, result.getFacets().size());
+		assertEquals(new ArrayList<String>(result.getFacets().keySet()),
+				Arrays.asList("often", "rarely"));
+		assertEquals(5, (int) result.getFacets().get("often"));
+		assertEquals(3, (int) result.getFacets().get("rarely"));
+		assertEquals(1, this.questionDB.searchFor("facets", 0, 2, 1)
+				.getFacets().size());
+		assertTrue(this.questionDB.searchFor("facets", 0, 2).getFacets()
+				.isEmpty());
+
+		// facets follow tag changes
+		this.questionDB.searchFor("facets 4").get(0).setTagString("rarely");
+		result = this.questionDB.searchFor("facets", 0, 2, 10);
+		assertEquals(4, (int) result.getFacets().get("often"));
+		assertEquals(4, (int) result.getFacets().get("rarely"));
+		result = this.questionDB.searchFor("facets tag:rarely", 0, 2, 10);
+		assertEquals(4, result.getTotal());
+		assertEquals(4, (int) result.getFacets().get("rarely"));
+	}
+
+	@Test
+	public void shouldExpandPrefixesToFrequentTerms() {
+		SearchIndex index = new SearchIndex();
+		StringBuilder content = new StringBuilder();
+		for (int i = 10; i < 60; i++) {
+			content.append("xq").append(i).append(' ');
+		}
+		index.add(this.questionDB.add(null, content.toString()));
+		for (int i = 0; i < 3; i++) {
+			index.add(this.questionDB.add(null, "xq99"));
+		}
+		List<String> terms = index.expand("xq");
+		assertEquals(SearchIndex.MAX_PREFIX_EXPANSION, terms.size());
+		assertEquals("xq99", terms.get(0));
+
+		// tags are only found through "tag:" searches
+		index.add(taggedNegative);
+		assertTrue(index.expand("pl").contains("plop"));
+		assertFalse(index.expand("ta").contains("tag:plop"));
+	}
+
+	@Test
+	public void shouldStoreIndexInSegment() throws IOException {
+		File file = File.createTempFile("search", ".idx");
+		file.delete();
+		try {
+			List<Question> questions = Arrays.asList(fulltextPositive,
+					fulltextNegative, taggedPositive, taggedNegative);
+			SearchIndex index = new SearchIndex();
+			for (Question question : questions) {
+				index.add(question);
+			}
+			int frequency = index.termFrequency("relev", taggedPositive);
+			double average = index.averageDocumentLength();
+			index.merge(file);
+			SearchSegment segment = new SearchSegment(file);
+			assertEquals(4, segment.documentCount());
+			assertEquals(2, segment.documentFrequency("relev"));
+			assertEquals(frequency, segment.termFrequency("relev",
+					taggedPositive.id()));
+
+			// unchanged questions are served straight from the segment, once
+			// they're looked up
+			SearchIndex reopened = new SearchIndex();
+			reopened.open(segment);
+			for (Question question : questions) {
+				assertTrue(reopened.add(question).isEmpty());
+			}
+			assertTrue(reopened.flush().size() > 0);
+			assertTrue(reopened.flush().isEmpty());
+			for (Question question : questions) {
+				assertTrue(reopened.add(question).isEmpty());
+			}
+			assertEquals(4, reopened.count());
+			assertEquals(average, reopened.averageDocumentLength(), 0.0001);
+			assertEquals(frequency, reopened.termFrequency("relev",
+					taggedPositive));
+			assertEquals(index.find(Arrays.asList("relev")), reopened
+					.find(Arrays.asList("relev")));
+			List<List<String>> groups = Arrays.asList(Arrays.asList("relev",
+					"tag:plop"));
+			assertEquals(3, reopened.find(new ArrayList<String>(), groups)
+					.size());
+			assertEquals(index.find(Arrays.asList("thing"), groups), reopened
+					.find(Arrays.asList("thing"), groups));
+			assertEquals(Arrays.asList("relev"), reopened.expand("rele"));
+			assertEquals(Arrays.asList("relev"), reopened.correct("relav"));
+
+			// changed questions are kept in the delta until the next merge
+			fulltextNegative.answer(null, "Relevant after all.");
+			assertTrue(reopened.add(fulltextNegative).contains("relev"));
+			assertEquals(3, reopened.find(Arrays.asList("relev")).size());
+			assertEquals(3, reopened.documentFrequency("relev"));
+			reopened.remove(taggedPositive);
+			assertEquals(2, reopened.documentFrequency("relev"));
+			reopened.merge(file);
+			assertEquals(3, reopened.count());
+			assertEquals(2, reopened.find(Arrays.asList("relev")).size());
+			assertEquals(3, new SearchSegment(file).documentCount());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void shouldSkipOverlongTerms() throws IOException {
+		StringBuilder blob = new StringBuilder();
+		for (int i = 0; i < 70000; i++) {
+			blob.append('x');
+		}
+		Question question = this.questionDB.add(null, "Relevant: " + blob);
+		File file = File.createTempFile("search", ".idx");
+		file.delete();
+		try {
+			SearchIndex index = new SearchIndex();
+			index.add(question);
+			assertEquals(0, index.documentFrequency(blob.toString()));
+			index.merge(file);
+			assertEquals(1, index.find(Arrays.asList("relev")).size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void shouldRejectCorruptSegments() throws IOException {
+		File file = File.createTempFile("search", ".idx");
+		file.delete();
+		try {
+			SearchIndex index = new SearchIndex();
+			index.add(fulltextPositive);
+			index.add(taggedPositive);
+			index.merge(file);
+			long length = file.length();
+			for (long size : new long[] { length - 1, length / 2, 44 }) {
+				RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				raf.setLength(size);
+				raf.close();
+				try {
+					new SearchSegment(file);
+					fail("a truncated segment must be rejected");
+				} catch (IOException e) {
+					// expected
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void shouldRejectSegmentsOfOtherAnalyzers() throws IOException {
+		File file = File.createTempFile("search", ".idx");
+		file.delete();
+		try {
+			SearchIndex index = new SearchIndex();
+			index.add(fulltextPositive);
+			index.merge(file);
+			SearchSegment segment = new SearchSegment(file);
+			assertEquals("en", segment.getAnalyzer());
+			Analyzer.set(Analyzer.forLanguage("de"));
+			try {
+				new SearchIndex().open(segment);
+				fail("terms of another analyzer must not be reused");
+			} catch (IOException e) {
+				// expected
+			}
+		} finally {
+			Analyzer.set(Analyzer.forLanguage("en"));
+			file.delete();
+		}
+	}
+
+	@Test
+	public void shouldSearchWithStoredIndex() throws IOException {
+		File file = File.createTempFile("search", ".idx");
+		file.delete();
+		try {
+			this.questionDB.openSearchIndex(file);
+			this.questionDB.mergeSearchIndex();
+			assertTrue(file.exists());
+			this.questionDB.openSearchIndex(file);
+			assertEquals(2, this.questionDB.searchFor("relevant").size());
+			this.questionDB.add(null, "Relevant and new.");
+			assertEquals(3, this.questionDB.searchFor("relevant").size());
+			this.questionDB.mergeSearchIndex();
+			assertEquals(3, this.questionDB.searchFor("relevant").size());
+		} finally {
+			file.delete();
+		}
+	}
 }
@@ -1,5 +1,7 @@
 package tests;
 
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 import models.Question;
@@ -186,6 +188,36 @@ public class TagTest extends MockedUnitTest {
 				|| SetOperations.arrayEquals(possibility2, similar.toArray()));
 	}
 
+	@Test
+	public void shouldListRelatedTags() {
+		IQuestionDatabase questionDB = new HotQuestionDatabase(this.tagDB);
+		User A = new User("A");
+		Question questionA = questionDB.add(A, "A?");
+		Question questionB = questionDB.add(A, "B?");
+		Question questionC = questionDB.add(A, "C?");
+
+		questionA.setTagString("x y z");
+		questionB.setTagString("x y");
+		questionC.setTagString("x w");
+
+		Tag x = this.tagDB.get("x");
+		List<Tag> related = questionDB.relatedTags(x, 10);
+		assertEquals(related.size(), 3);
+		assertEquals(related.get(0), this.tagDB.get("y"));
+		assertEquals(questionDB.relatedTags(x, 1).size(), 1);
+
+		questionB.delete();
+		questionC.setTagString("w");
+		related = questionDB.relatedTags(x, 10);
+		assertEquals(related.size(), 2);
+		assertTrue(related.contains(this.tagDB.get("y")));
+		assertTrue(related.contains(this.tagDB.get("z")));
+		// questions of other databases aren't similar
+		question1.setTagString("x z");
+		assertEquals(questionDB.findSimilar(questionA).size(), 0);
+		question1.setTagString(null);
+	}
+
 	@Test
 	public void shouldIgnoreDuplicates() {
 		question1.setTagString("double double double");
@@ -222,6 +254,82 @@ public class TagTest extends MockedUnitTest {
 		assertEquals("tag2", tagNames.get(2));
 	}
 
+	@Test
+	public void shouldSuggestMostUsedTags() {
+		Question question3 = new Question(douglas, "Why so?", tagDB, null);
+		question1.setTagString("tag1 tag2 tag3 nag4");
+		question2.setTagString("tag2 tag3");
+		question3.setTagString("tag3");
+
+		List<String> tagNames = tagDB.suggestTagNames("ta", 2);
+		assertEquals(2, tagNames.size());
+		assertEquals("tag3", tagNames.get(0));
+		assertEquals("tag2", tagNames.get(1));
+
+		tagNames = tagDB.suggestTagNames(null, 10);
+		assertEquals(4, tagNames.size());
+		assertEquals("tag3", tagNames.get(0));
+		assertEquals("nag4", tagNames.get(2));
+		assertEquals("tag1", tagNames.get(3));
+
+		assertEquals(0, tagDB.suggestTagNames("tag4", 10).size());
+		assertEquals(0, tagDB.suggestTagNames("ta", 0).size());
+	}
+
+	@Test
+	public void shouldHaveDenseIds() {
+		question1.setTagString("c a b");
+		assertEquals(tagDB.get("c").id(), 0);
+		assertEquals(tagDB.get("a").id(), 1);
+		assertEquals(tagDB.get("b").id(), 2);
+		assertTrue(Arrays.equals(question1.getTagIds(), new int[] { 0, 1, 2 }));
+
+		question2.setTagString("b d");
+		assertEquals(question2.countCommonTags(question1.getTagIds()), 1);
+		question1.setTagString("d");
+		// the IDs of deleted tags are reused
+		assertEquals(tagDB.all().size(), 2);
+		assertTrue(tagDB.get("e").id() < 4);
+		assertEquals(question1.countCommonTags(question2.getTagIds()), 1);
+		assertEquals(new Tag("standalone", null).id(), -1);
+	}
+
+	@Test
+	public void shouldListTrendingTags() {
+		long day = 24 * 60 * 60 * 1000;
+		sysInfo.changeTo(new Date(1291590000000L));
+		IQuestionDatabase questionDB = new HotQuestionDatabase(this.tagDB);
+		User A = new User("A");
+		User B = new User("B");
+		Question questionA = questionDB.add(A, "A?");
+		Question questionB = questionDB.add(A, "B?");
+		questionA.setTagString("old common");
+		questionB.setTagString("new common");
+		Tag old = this.tagDB.get("old");
+		assertEquals(this.tagDB.getActivity(old), 1.0, 0.001);
+
+		questionA.answer(B, "Answer").voteUp(A);
+		questionA.voteUp(B);
+		questionA.voteCancel(B);
+		assertEquals(this.tagDB.getActivity(old), 4.0, 0.001);
+		assertEquals(this.tagDB.getTrendingTags(1).get(0), this.tagDB
+				.get("common"));
+
+		sysInfo.changeTo(new Date(1291590000000L + 2 * day));
+		assertEquals(this.tagDB.getActivity(old), 1.0, 0.001);
+		questionB.answer(B, "Answer");
+		questionB.answer(B, "Another answer");
+		List<Tag> trending = this.tagDB.getTrendingTags(3);
+		assertEquals(trending.size(), 3);
+		assertEquals(trending.get(0), this.tagDB.get("common"));
+		assertEquals(trending.get(1), this.tagDB.get("new"));
+		assertEquals(trending.get(2), old);
+
+		questionA.delete();
+		sysInfo.changeTo(new Date(1291590000000L + 2 * day + 60 * 1000));
+		assertEquals(this.tagDB.getTrendingTags(3).size(), 2);
+	}
+
 	@Test
 	public void shouldAllowStandaloneTags() {
 		Tag tag = new Tag(tagName, null);
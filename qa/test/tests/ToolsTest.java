@@ -2,17 +2,73 @@ package tests;
 
 import java.text.ParseException;
 import java.util.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import models.helpers.Analyzer;
+import models.helpers.Histogram;
+import models.helpers.IFilter;
 import models.helpers.Mapper;
+import models.helpers.RankedSet;
 import models.helpers.SetOperations;
+import models.helpers.SlidingWindowCounter;
 import models.helpers.Tools;
 
 import org.junit.Test;
 
 public class ToolsTest extends MockedUnitTest {
 
+	@Test
+	public void shouldSelectTopK() {
+		List<Integer> numbers = Arrays.asList(5, 3, 9, 1, 7, 2, 8);
+		IFilter<Integer, Integer> identity = new IFilter<Integer, Integer>() {
+			public Integer visit(Integer i) {
+				return i == 8 ? null : i;
+			}
+		};
+		assertEquals(Arrays.asList(1, 2, 3), Mapper.top(numbers, identity, 3));
+		assertEquals(Mapper.sort(numbers, identity), Mapper.top(numbers,
+				identity, 100));
+		assertTrue(Mapper.top(numbers, identity, 0).isEmpty());
+	}
+
+	@Test
+	public void shouldProcessInParallel() {
+		List<Integer> numbers = new ArrayList<Integer>();
+		for (int i = 0; i < 1000; i++) {
+			numbers.add((i * 7919) % 1000);
+		}
+		IFilter<Integer, Integer> odd = new IFilter<Integer, Integer>() {
+			public Integer visit(Integer i) {
+				return i % 2 == 1 ? i : null;
+			}
+		};
+		IFilter<Integer, Boolean> even = new IFilter<Integer, Boolean>() {
+			public Boolean visit(Integer i) {
+				return i % 2 == 0;
+			}
+		};
+		List<Integer> sorted = Mapper.sort(numbers, odd);
+		List<Integer> top = Mapper.top(numbers, odd, 10);
+		List<Integer> filtered = Mapper.filter(numbers, even);
+		int sum = Mapper.sum(numbers, odd);
+
+		Mapper.setParallel(true, 100);
+		try {
+			assertEquals(sorted, Mapper.sort(numbers, odd));
+			assertEquals(top, Mapper.top(numbers, odd, 10));
+			assertEquals(filtered, Mapper.filter(numbers, even));
+			assertEquals(sum, Mapper.sum(numbers, odd));
+			assertEquals(250000, sum);
+		} finally {
+			Mapper.setParallel(false, 10000);
+		}
+	}
+
 	@Test
 	public void shouldConvertMarkdown() {
 		assertEquals(Tools.markdownToHtml("*italic*"), "<p><em>italic</em></p>");
@@ -90,6 +146,116 @@ public class ToolsTest extends MockedUnitTest {
 		assertNull(Tools.digest("a", "Cobertura-Dummy-Algo"));
 	}
 
+	@Test
+	public void shouldCalculateEditDistance() {
+		assertEquals(0, Tools.editDistance("search", "search", 2));
+		assertEquals(2, Tools.editDistance("serach", "search", 2));
+		assertEquals(1, Tools.editDistance("searh", "search", 2));
+		assertEquals(1, Tools.editDistance("searchs", "search", 2));
+		assertEquals(3, Tools.editDistance("kitten", "sitting", 5));
+		// distances above the maximum aren't calculated exactly
+		assertEquals(3, Tools.editDistance("kitten", "sitting", 2));
+		assertEquals(2, Tools.editDistance("a", "search", 1));
+	}
+
+	@Test
+	public void shouldStemWords() {
+		Analyzer english = Analyzer.forLanguage("en");
+		assertEquals("compil", english.term("compile"));
+		assertEquals("compil", english.term("Compiling"));
+		assertEquals("compil", english.term("compiled"));
+		assertEquals("poni", english.term("ponies"));
+		assertEquals("relat", english.term("relational"));
+		assertNull(english.term("the"));
+		assertEquals(Arrays.asList("question", null, "answer"), english
+				.analyze("Questions and answers!"));
+
+		Analyzer german = Analyzer.forLanguage("de");
+		assertEquals(german.term("Fragen"), german.term("Frage"));
+		assertEquals(german.term("Bücher"), german.term("Buch"));
+		assertNull(german.term("und"));
+
+		Analyzer french = Analyzer.forLanguage("fr");
+		assertEquals(french.term("chevaux"), french.term("cheval"));
+		assertEquals(french.term("questionnée"), french.term("questionner"));
+		assertNull(french.term("les"));
+	}
+
+	@Test
+	public void shouldRankElements() {
+		RankedSet<Integer> set = new RankedSet<Integer>(
+				new Comparator<Integer>() {
+					public int compare(Integer a, Integer b) {
+						return a.compareTo(b);
+					}
+				});
+		assertTrue(set.isEmpty());
+		for (int i = 0; i < 1000; i++) {
+			set.add((i * 7919) % 1000);
+		}
+		set.add(500);
+		assertEquals(set.size(), 1000);
+		for (int i = 0; i < 1000; i += 2) {
+			set.remove(i);
+		}
+		assertEquals(set.size(), 500);
+		assertTrue(set.contains(501));
+		assertFalse(set.contains(500));
+		for (int i = 0; i < 500; i++) {
+			assertEquals((int) set.get(i), 2 * i + 1);
+		}
+		set.clear();
+		assertEquals(set.size(), 0);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void shouldRejectInvalidRank() {
+		new RankedSet<String>(String.CASE_INSENSITIVE_ORDER).get(0);
+	}
+
+	@Test
+	public void shouldTrackHighestCount() {
+		Histogram<String> histogram = new Histogram<String>();
+		assertEquals(histogram.max(), 0);
+		histogram.increment("a");
+		histogram.increment("a");
+		histogram.increment("b");
+		histogram.increment(null);
+		assertEquals(histogram.max(), 2);
+		assertEquals(histogram.total(), 4);
+		assertEquals(histogram.count(null), 1);
+		histogram.decrement("a");
+		assertEquals(histogram.max(), 1);
+		histogram.decrement("a");
+		histogram.decrement("a");
+		histogram.decrement("b");
+		histogram.decrement(null);
+		assertEquals(histogram.max(), 0);
+		assertEquals(histogram.total(), 0);
+		assertEquals(histogram.count("a"), 0);
+	}
+
+	@Test
+	public void shouldCountWithinSlidingWindow() {
+		SlidingWindowCounter counter = new SlidingWindowCounter();
+		long minute = 60 * 1000;
+		long start = 1291590000000L;
+		assertEquals(counter.count(new Date(start)), 0);
+		for (int i = 0; i < 90; i++) {
+			counter.add(new Date(start + i * minute), 1);
+		}
+		assertEquals(counter.count(new Date(start + 89 * minute)), 60);
+		assertEquals(counter.count(new Date(start + 130 * minute)), 19);
+		assertEquals(counter.count(new Date(start + 200 * minute)), 0);
+
+		// events older than the window and removed events don't count
+		counter.add(new Date(start), 1);
+		counter.add(new Date(start + 89 * minute), -1);
+		assertEquals(counter.count(new Date(start + 89 * minute)), 59);
+		counter.clear();
+		assertEquals(counter.count(new Date(start + 89 * minute)), 0);
+	}
+
 	@Test
 	public void shouldMakeCoberturaHappy() {
 		new Mapper();
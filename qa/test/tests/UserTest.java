@@ -1,6 +1,7 @@
 package tests;
 
 import java.text.ParseException;
+import java.util.Date;
 
 import models.Answer;
 import models.Question;
@@ -124,6 +125,20 @@ public class UserTest extends MockedUnitTest {
 		assertTrue(user.isBlocked());
 	}
 
+	@Test
+	public void shouldOnlyCountItemsOfLastHour() {
+		sysInfo.changeTo(new Date(1291590000000L));
+		User user = new User("Poster");
+		Question question = new Question(user, "Early question");
+		sysInfo.changeTo(new Date(1291590000000L + 30 * 60 * 1000));
+		question.answer(user, "Later answer");
+		assertEquals(2, user.howManyItemsPerHour());
+		sysInfo.changeTo(new Date(1291590000000L + 61 * 60 * 1000));
+		assertEquals(1, user.howManyItemsPerHour());
+		question.answers().get(0).delete();
+		assertEquals(0, user.howManyItemsPerHour());
+	}
+
 	@Test
 	public void checkForCheater() {
 		User user = new User("TheSupported");
@@ -167,6 +182,39 @@ public class UserTest extends MockedUnitTest {
 		assertTrue(voter.isMaybeCheater());
 	}
 
+	@Test
+	public void shouldForgetRemovedVotes() {
+		User voter = new User("Voter");
+		User user = new User("User");
+		Question[] questions = new Question[4];
+		for (int i = 0; i < 4; i++) {
+			questions[i] = new Question(user, "Q-" + i);
+			questions[i].voteUp(voter);
+		}
+		assertTrue(voter.isMaybeCheater());
+		questions[0].voteCancel(voter);
+		assertFalse(voter.isMaybeCheater());
+		questions[0].voteDown(voter);
+		assertFalse(voter.isMaybeCheater());
+		questions[0].voteUp(voter);
+		assertTrue(voter.isMaybeCheater());
+
+		// votes for anonymized entries don't support their former owner
+		User other = new User("Other");
+		for (int i = 0; i < 3; i++) {
+			new Question(other, "O-" + i).voteUp(voter);
+		}
+		assertTrue(voter.isMaybeCheater());
+		questions[0].anonymize();
+		questions[1].anonymize();
+		assertFalse(voter.isMaybeCheater());
+		new Question(other, "O-last").voteUp(voter);
+		assertFalse(voter.isMaybeCheater());
+		questions[2].delete();
+		questions[3].delete();
+		assertTrue(voter.isMaybeCheater());
+	}
+
 	@Test
 	public void shouldNotBeAbleToEditForeignPosts() {
 		User user1 = new User("Jack");
@@ -283,6 +331,35 @@ public class UserTest extends MockedUnitTest {
 		assertFalse(user.getRecentAnswers().contains(answer));
 	}
 
+	@Test
+	public void shouldKeepItemsOrderedByType() {
+		User user = new User("Jack");
+		sysInfo.changeTo(new Date(1000000000000L));
+		Question first = new Question(user, "First");
+		sysInfo.changeTo(new Date(1000000001000L));
+		Question second = new Question(user, "Second");
+		Answer answer = second.answer(user, "Answer");
+		first.comment(user, "Comment");
+		assertEquals(2, user.getQuestions().size());
+		assertEquals(1, user.getAnswers().size());
+		assertEquals(1, user.getComments().size());
+		assertEquals(second, user.getRecentQuestions().get(0));
+		assertEquals(first, user.getRecentQuestions().get(1));
+
+		// importers may change the timestamps afterwards
+		first.setTimestamp(new Date(1000000002000L));
+		assertEquals(first, user.getRecentQuestions().get(0));
+		assertEquals(2, user.getQuestions().size());
+
+		answer.delete();
+		assertEquals(0, user.getAnswers().size());
+		assertEquals(0, user.getRecentAnswers().size());
+		user.anonymize(true);
+		assertEquals(0, user.getQuestions().size());
+		assertEquals(0, user.getComments().size());
+		assertEquals(0, user.getRecentQuestions().size());
+	}
+
 	@Test
 	public void shouldHaveOneHighRatedAnswer() {
 		User user = new User("Jack");
@@ -338,6 +415,22 @@ public class UserTest extends MockedUnitTest {
 		assertEquals(m, this.questionDB.suggestQuestions(user5).get(0));
 	}
 
+	@Test
+	public void shouldForgetSuggestionsOfDownVotedAnswers() {
+		User user4 = new User("User4");
+		User user5 = new User("User5");
+		Question m = this.questionDB.add(null, "Why?");
+		Question n = this.questionDB.add(null, "Where?");
+		m.setTagString("demo");
+		n.setTagString("demo");
+		Answer answer = n.answer(user5, "Therefore");
+		assertEquals(1, this.questionDB.suggestQuestions(user5).size());
+
+		// answers rated below zero don't lead to suggestions
+		answer.voteDown(user4);
+		assertEquals(0, this.questionDB.suggestQuestions(user5).size());
+	}
+
 	@Test
 	public void shouldSuggestThreeQuestions() {
 		User user3 = new User("User3");
@@ -538,6 +631,32 @@ public class UserTest extends MockedUnitTest {
 		assertEquals(0, this.questionDB.suggestQuestions(user5).size());
 	}
 
+	@Test
+	public void shouldUpdateCachedSuggestions() {
+		User user3 = new User("User3");
+		User user5 = new User("User5");
+		Question q = this.questionDB.add(user3, "Simple question");
+		q.setTagString("demo");
+		q.answer(user5, "Simple!");
+		assertEquals(0, this.questionDB.suggestQuestions(user5).size());
+
+		Question p = this.questionDB.add(user3, "Hard question");
+		p.setTagString("demo");
+		assertEquals(1, this.questionDB.suggestQuestions(user5).size());
+		assertEquals(p, this.questionDB.suggestQuestions(user5).get(0));
+
+		Question r = this.questionDB.add(user3, "Unrelated question");
+		r.setTagString("other");
+		r.answer(user5, "Unrelated!");
+		Question o = this.questionDB.add(user3, "Other question");
+		o.setTagString("other");
+		assertEquals(2, this.questionDB.suggestQuestions(user5).size());
+
+		p.delete();
+		assertEquals(1, this.questionDB.suggestQuestions(user5).size());
+		assertEquals(o, this.questionDB.suggestQuestions(user5).get(0));
+	}
+
 	@Test
 	public void shouldHaveDebugFriendly_toString() {
 		User james = new User("James");
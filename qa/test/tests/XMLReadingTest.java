@@ -1,6 +1,9 @@
 package tests;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -8,6 +11,7 @@ import models.Question;
 import models.User;
 import models.database.IDatabase;
 import models.database.HotDatabase.HotDatabase;
+import models.database.importers.CorpusGenerator;
 import models.database.importers.Importer;
 import models.database.importers.SemanticError;
 
@@ -229,4 +233,39 @@ public class XMLReadingTest extends MockedUnitTest {
 		assertNull(question.owner());
 		assertNull(question.answers().get(0).owner());
 	}
+
+	@Test
+	public void shouldGenerateReproducibleCorpus() throws SAXException,
+			IOException, ParserConfigurationException {
+		CorpusGenerator generator = new CorpusGenerator(42, 20, 50, 10);
+		StringWriter xml = new StringWriter();
+		generator.writeXML(xml);
+		StringWriter again = new StringWriter();
+		new CorpusGenerator(42, 20, 50, 10).writeXML(again);
+		assertEquals(xml.toString(), again.toString());
+
+		generator.generate(this.db);
+		IDatabase imported = new HotDatabase();
+		new Importer(imported).importXML(xml.toString());
+		assertEquals(20, this.db.users().all().size());
+		assertEquals(20, imported.users().all().size());
+		assertEquals(50, this.db.questions().count());
+		assertEquals(50, imported.questions().count());
+		// (the imported questions lack the votes and are thus sorted
+		// differently)
+		Map<String, Question> copies = new HashMap<String, Question>();
+		for (Question copy : imported.questions().all()) {
+			copies.put(copy.content(), copy);
+		}
+		int answers = 0;
+		for (Question question : this.db.questions().all()) {
+			Question copy = copies.get(question.content());
+			assertNotNull(copy);
+			assertEquals(question.getTags().size(), copy.getTags().size());
+			assertEquals(question.answers().size(), copy.answers().size());
+			answers += question.answers().size();
+		}
+		assertTrue(answers > 0);
+		assertTrue(this.db.tags().all().size() <= 10);
+	}
 }